@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.benchmarks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.psu.cse.siis.coal.PropagationSolver;
+import edu.psu.cse.siis.coal.field.SequenceElement;
+import edu.psu.cse.siis.coal.field.transformers.FieldTransformer;
+import edu.psu.cse.siis.coal.field.transformers.scalar.ScalarReplace;
+import edu.psu.cse.siis.coal.field.transformers.set.Add;
+import edu.psu.cse.siis.coal.field.values.FieldValue;
+import edu.psu.cse.siis.coal.field.values.IntermediateFieldValue;
+import edu.psu.cse.siis.coal.field.values.ScalarFieldValue;
+import edu.psu.cse.siis.coal.field.values.SetFieldValue;
+import edu.psu.cse.siis.coal.transformers.PathTransformer;
+import edu.psu.cse.siis.coal.transformers.PropagationTransformer;
+import edu.psu.cse.siis.coal.values.PathValue;
+import edu.psu.cse.siis.coal.values.PropagationValue;
+
+/**
+ * Synthetic COAL values and transformers shaped like the ones of the reflection model: a scalar
+ * class name, a scalar member name and a set of parameter types for every path.
+ */
+final class LatticeFixtures {
+  static final String CLASS_FIELD = "clazz";
+  static final String NAME_FIELD = "name";
+  static final String PARAMETERS_FIELD = "parameters";
+
+  private LatticeFixtures() {
+  }
+
+  /**
+   * Returns the largest integer whose square does not exceed the cardinality, so that the cross
+   * product of two collections of that size stays within the cardinality.
+   */
+  static int sqrt(int cardinality) {
+    return Math.max(1, (int) Math.sqrt(cardinality));
+  }
+
+  static PathValue pathValue(int index) {
+    PathValue pathValue = new PathValue();
+    pathValue.addFieldEntry(CLASS_FIELD, new ScalarFieldValue("com.example.app.Class" + index)
+        .intern());
+    pathValue.addFieldEntry(NAME_FIELD, new ScalarFieldValue("method" + index).intern());
+    SetFieldValue parameters = new SetFieldValue();
+    parameters.addAll(Collections.<Object>singleton("java.lang.String"));
+    parameters.addAll(Collections.<Object>singleton("int" + (index % 4)));
+    pathValue.addFieldEntry(PARAMETERS_FIELD, parameters.intern());
+    return pathValue;
+  }
+
+  /**
+   * Returns a propagation value with the path values of indices [from, to).
+   */
+  static PropagationValue propagationValue(int from, int to) {
+    PropagationValue value = new PropagationValue();
+    for (int i = from; i < to; ++i) {
+      value.addPathValue(pathValue(i));
+    }
+    return value.intern();
+  }
+
+  static PathTransformer pathTransformer(int index) {
+    PathTransformer pathTransformer = new PathTransformer();
+    pathTransformer.addFieldTransformer(CLASS_FIELD,
+        new ScalarReplace("com.example.app.Class" + index).intern());
+    pathTransformer.addFieldTransformer(PARAMETERS_FIELD, new Add("type" + index).intern());
+    return pathTransformer.intern();
+  }
+
+  /**
+   * Returns a propagation transformer with the path transformers of indices [from, to).
+   */
+  static PropagationTransformer propagationTransformer(int from, int to) {
+    PropagationTransformer transformer = new PropagationTransformer();
+    for (int i = from; i < to; ++i) {
+      transformer.addPathTransformer(pathTransformer(i));
+    }
+    return transformer.intern();
+  }
+
+  /**
+   * An intermediate field value that expands to a fixed set of final values. COAL resolves these
+   * from referenced values through the solver, which the benchmarks do not need.
+   */
+  static final class ExpandingFieldValue extends IntermediateFieldValue {
+    private final Set<FieldValue> finalValues = new HashSet<>();
+
+    ExpandingFieldValue(String prefix, int count) {
+      for (int i = 0; i < count; ++i) {
+        finalValues.add(new ScalarFieldValue(prefix + i).intern());
+      }
+    }
+
+    @Override
+    public Set<FieldValue> makeFinalFieldValues(String field, PropagationSolver solver) {
+      return finalValues;
+    }
+
+    @Override
+    public Object getValue() {
+      return null;
+    }
+  }
+
+  /**
+   * A path value whose class and name fields reference other values, each of which has
+   * sqrt(cardinality) possible values, for a total of about cardinality final path values.
+   */
+  static PathValue intermediatePathValue(int cardinality) {
+    int count = sqrt(cardinality);
+    PathValue pathValue = new PathValue();
+    pathValue.addFieldEntry(CLASS_FIELD, new ExpandingFieldValue("com.example.app.Class", count));
+    pathValue.addFieldEntry(NAME_FIELD, new ExpandingFieldValue("method", count));
+    SetFieldValue parameters = new SetFieldValue();
+    parameters.addAll(Collections.<Object>singleton("java.lang.String"));
+    pathValue.addFieldEntry(PARAMETERS_FIELD, parameters.intern());
+    return pathValue;
+  }
+
+  /**
+   * A sequence element whose referenced value yields a fixed set of field transformers.
+   */
+  static final class ExpandingSequenceElement extends SequenceElement {
+    private final Set<FieldTransformer> finalTransformers = new HashSet<>();
+
+    ExpandingSequenceElement(String prefix, int count) {
+      super(null, null, "add");
+      for (int i = 0; i < count; ++i) {
+        finalTransformers.add(new Add(prefix + i).intern());
+      }
+    }
+
+    @Override
+    public Set<FieldTransformer> makeFinalTransformers(String field, PropagationSolver solver) {
+      return finalTransformers;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.benchmarks;
+
+import heros.EdgeFunction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.psu.cse.siis.coal.transformers.PropagationTransformer;
+import edu.psu.cse.siis.coal.values.BasePropagationValue;
+import edu.psu.cse.siis.coal.values.PropagationValue;
+
+/**
+ * Benchmarks the edge function operations of {@link PropagationTransformer}, with transformers and
+ * values whose cardinality (or the cardinality of the result, for the cross products) is the
+ * cardinality parameter, up to {@link edu.psu.cse.siis.coal.Constants#VALUE_LIMIT}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropagationTransformerBenchmark {
+  @Param({"2", "16", "64", "256"})
+  int cardinality;
+
+  // A transformer with many paths, followed by a single-path statement transformer.
+  private PropagationTransformer wide;
+  private PropagationTransformer single;
+  // Two transformers whose composition has about cardinality paths.
+  private PropagationTransformer crossFirst;
+  private PropagationTransformer crossSecond;
+  // Two transformers that overlap by half, with cardinality paths in total.
+  private PropagationTransformer meetFirst;
+  private PropagationTransformer meetSecond;
+  // A value to which a transformer of sqrt(cardinality) paths is applied.
+  private PropagationValue source;
+
+  @Setup
+  public void setUp() {
+    int sqrt = LatticeFixtures.sqrt(cardinality);
+    int half = cardinality / 2;
+
+    wide = LatticeFixtures.propagationTransformer(0, cardinality);
+    single = LatticeFixtures.propagationTransformer(cardinality, cardinality + 1);
+    crossFirst = LatticeFixtures.propagationTransformer(0, sqrt);
+    crossSecond = LatticeFixtures.propagationTransformer(sqrt, 2 * sqrt);
+    meetFirst = LatticeFixtures.propagationTransformer(0, half);
+    meetSecond = LatticeFixtures.propagationTransformer(half / 2, half / 2 + half);
+    source = LatticeFixtures.propagationValue(0, sqrt);
+  }
+
+  @Benchmark
+  public EdgeFunction<BasePropagationValue> composeWith() {
+    return wide.composeWith(single);
+  }
+
+  @Benchmark
+  public EdgeFunction<BasePropagationValue> composeWithCrossProduct() {
+    return crossFirst.composeWith(crossSecond);
+  }
+
+  @Benchmark
+  public EdgeFunction<BasePropagationValue> meetWith() {
+    return meetFirst.meetWith(meetSecond);
+  }
+
+  @Benchmark
+  public PropagationValue computeTarget() {
+    return crossFirst.computeTarget(source);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.psu.cse.siis.coal.field.SequenceElement;
+import edu.psu.cse.siis.coal.field.TransformerSequence;
+import edu.psu.cse.siis.coal.field.transformers.FieldTransformer;
+
+/**
+ * Benchmarks {@link TransformerSequence#makeFinalFieldTransformers}, for a sequence of two
+ * references whose composition yields about cardinality field transformers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerSequenceBenchmark {
+  @Param({"2", "16", "64", "256"})
+  int cardinality;
+
+  private TransformerSequence sequence;
+
+  @Setup
+  public void setUp() {
+    int sqrt = LatticeFixtures.sqrt(cardinality);
+    List<SequenceElement> elements = new ArrayList<>();
+    elements.add(new LatticeFixtures.ExpandingSequenceElement("com.example.app.Class", sqrt));
+    elements.add(new LatticeFixtures.ExpandingSequenceElement("java.lang.String", sqrt));
+    sequence = new TransformerSequence(elements);
+  }
+
+  @Benchmark
+  public Set<FieldTransformer> makeFinalFieldTransformers() {
+    return sequence.makeFinalFieldTransformers(LatticeFixtures.PARAMETERS_FIELD, null);
+  }
+}
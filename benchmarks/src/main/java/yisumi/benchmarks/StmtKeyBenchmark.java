@@ -0,0 +1,114 @@
+package yisumi.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.IntType;
+import soot.Local;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import yisumi.model.StmtKey;
+import yisumi.model.StmtType;
+import yisumi.model.StmtValue;
+
+/**
+ * Builds the StmtKey -> StmtValue map of an app with many reflective call sites (5k by default),
+ * as DroidRAResult and HeuristicUnknownValueInfer do.
+ * 
+ * byString keys the same map on StmtKey.toString(), which is what StmtKey.hashCode() used to compute.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StmtKeyBenchmark 
+{
+	@Param({"5000"})
+	int sites;
+	
+	private static final int SITES_PER_METHOD = 20;
+	private static final int METHODS_PER_CLASS = 10;
+	
+	private List<StmtKey> keys;
+	private StmtValue value;
+	
+	@Setup
+	public void setUp()
+	{
+		keys = new ArrayList<StmtKey>(sites);
+		value = new StmtValue(StmtType.METHOD_CALL);
+		
+		SootClass sc = null;
+		SootMethod sm = null;
+		for (int i = 0; i < sites; i++)
+		{
+			if (0 == i % (SITES_PER_METHOD * METHODS_PER_CLASS))
+			{
+				sc = new SootClass("com.example.app.GeneratedClass" + i);
+			}
+			if (0 == i % SITES_PER_METHOD)
+			{
+				sm = new SootMethod("method" + i, Collections.<Type>singletonList(IntType.v()), VoidType.v());
+				sc.addMethod(sm);
+			}
+			
+			Local local = Jimple.v().newLocal("$r" + (i % SITES_PER_METHOD), IntType.v());
+			Stmt stmt = Jimple.v().newAssignStmt(local, IntConstant.v(i));
+			keys.add(new StmtKey(sm, stmt));
+		}
+	}
+	
+	@Benchmark
+	public Map<StmtKey, StmtValue> byKey()
+	{
+		Map<StmtKey, StmtValue> stmtKeyValues = new HashMap<StmtKey, StmtValue>();
+		for (StmtKey key : keys)
+		{
+			stmtKeyValues.put(key, value);
+		}
+		for (StmtKey key : keys)
+		{
+			stmtKeyValues.get(key);
+		}
+		return stmtKeyValues;
+	}
+	
+	@Benchmark
+	public Map<String, StmtValue> byString()
+	{
+		Map<String, StmtValue> stmtKeyValues = new HashMap<String, StmtValue>();
+		for (StmtKey key : keys)
+		{
+			stmtKeyValues.put(key.toString(), value);
+		}
+		for (StmtKey key : keys)
+		{
+			stmtKeyValues.get(key.toString());
+		}
+		return stmtKeyValues;
+	}
+}
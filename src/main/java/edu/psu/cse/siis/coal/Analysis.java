@@ -47,15 +47,37 @@ import edu.psu.cse.siis.coal.lang.ParseException;
  */
 public abstract class Analysis<A extends CommandLineArguments> {
   /**
-   * Pattern method to perform the analysis.
+   * Performs the analysis in a given analysis context. All the state of the analysis (model,
+   * parameters, results, Soot scene, etc.) is kept in the context, so that several analyses can be
+   * performed in the same JVM, one after the other or concurrently.
    * 
+   * @param context The analysis context.
    * @param commandLineArguments A {@link CommandLineArguments} subclass object that represents the
    *          command line arguments for this analysis.
    */
+  public void performAnalysis(AnalysisContext context, A commandLineArguments) {
+    AnalysisContext previous = context.enter();
+    try {
+      performAnalysis(commandLineArguments);
+    } finally {
+      context.exit(previous);
+    }
+  }
+
+  /**
+   * Pattern method to perform the analysis in the current analysis context.
+   * 
+   * @param commandLineArguments A {@link CommandLineArguments} subclass object that represents the
+   *          command line arguments for this analysis.
+   * @see AnalysisContext#current()
+   */
+  @SuppressWarnings("try")
   public void performAnalysis(A commandLineArguments) {
     try {
       PropagationTimers.v().modelParsing.start();
-      loadModel(commandLineArguments);
+      try (AnalysisMetrics.Phase phase = AnalysisMetrics.v().startPhase("modelLoading")) {
+        loadModel(commandLineArguments);
+      }
       PropagationTimers.v().modelParsing.end();
       PropagationTimers.v().misc.start();
       registerFieldTransformerFactories(commandLineArguments);
@@ -68,12 +90,17 @@ public abstract class Analysis<A extends CommandLineArguments> {
       finalizeAnalysis(commandLineArguments);
     } catch (FatalAnalysisException e) {
       handleFatalAnalysisException(commandLineArguments, e);
+    } finally {
+      // Only the pools of this context are recorded and cleared. Other analyses running
+      // concurrently in their own contexts keep theirs.
+      Pool.recordMetrics(AnalysisMetrics.v());
+      Pool.clearAll();
     }
   }
 
   /**
    * Loads the COAL model to be used for the analysis. The model can be stored either in a directory
-   * with a flat structure (no subdirectories) or in a compiled (serialized) format.
+   * with a flat structure (no subdirectories) or in a compiled format.
    * 
    * @param commanLineArguments A {@link CommandLineArguments} subclass object that represents the
    *          command line arguments for this analysis.
@@ -90,7 +117,7 @@ public abstract class Analysis<A extends CommandLineArguments> {
       } else {
         throw new FatalAnalysisException("No model file or directory was specified");
       }
-    } catch (ClassNotFoundException | IOException | ParseException e) {
+    } catch (IOException | ParseException e) {
       throw new FatalAnalysisException("Could not load model", e);
     }
   }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import soot.G;
+
+/**
+ * The state of one analysis: the analysis parameters, the model, the iteration state, the timers
+ * and metrics, the results, the interning pools, the Soot globals and any other per-analysis state
+ * registered as an attribute (e.g., the string constraints).
+ *
+ * <p>
+ * The singleton accessors ({@link AnalysisParameters#v()}, {@link Model#v()}, etc.) return the
+ * state of the context bound to the current thread. A context is bound with {@link #enter()} and
+ * unbound with {@link #exit(AnalysisContext)}; threads started while a context is bound inherit it,
+ * which covers the IDE solver and argument value threads. Threads without a bound context use a
+ * default context, so that single analyses do not need to deal with contexts at all.
+ * </p>
+ *
+ * <p>
+ * Several analyses can run concurrently in one JVM, each in its own context. All state of an
+ * analysis becomes unreachable once its context is discarded.
+ * </p>
+ */
+public class AnalysisContext {
+  private static final AnalysisContext defaultContext = new AnalysisContext(false);
+  private static final InheritableThreadLocal<AnalysisContext> currentContext =
+      new InheritableThreadLocal<>();
+  private static boolean sootGlobalsInstalled = false;
+
+  private final boolean ownsSootGlobals;
+  private volatile G sootGlobals;
+
+  volatile AnalysisParameters analysisParameters = new AnalysisParameters();
+  volatile Model model;
+  volatile IterationSolver iterationSolver = new IterationSolver();
+  volatile PropagationTimers propagationTimers = new PropagationTimers();
+  final List<Result> results = new CopyOnWriteArrayList<>();
+  final AnalysisMetrics metrics = new AnalysisMetrics();
+  final Pool.Registry pools = new Pool.Registry();
+
+  private final ConcurrentMap<Class<?>, Object> attributes = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new analysis context, with its own Soot globals.
+   */
+  public AnalysisContext() {
+    this(true);
+  }
+
+  private AnalysisContext(boolean ownsSootGlobals) {
+    this.ownsSootGlobals = ownsSootGlobals;
+    if (ownsSootGlobals) {
+      installSootGlobals();
+    }
+  }
+
+  /**
+   * Returns the context bound to the current thread, or the default context if there is none.
+   *
+   * @return The current analysis context.
+   */
+  public static AnalysisContext current() {
+    AnalysisContext context = currentContext.get();
+    return context == null ? defaultContext : context;
+  }
+
+  /**
+   * Binds this context to the current thread.
+   *
+   * @return The context that was previously bound, to be passed to {@link #exit(AnalysisContext)}.
+   */
+  public AnalysisContext enter() {
+    AnalysisContext previous = currentContext.get();
+    currentContext.set(this);
+    return previous;
+  }
+
+  /**
+   * Restores the context that was bound to the current thread before {@link #enter()}.
+   *
+   * @param previous The value returned by {@link #enter()}.
+   */
+  public void exit(AnalysisContext previous) {
+    if (previous == null) {
+      currentContext.remove();
+    } else {
+      currentContext.set(previous);
+    }
+  }
+
+  /**
+   * Returns a per-analysis attribute, creating it if it does not exist yet. This is how state that
+   * is private to a package (e.g., the string constraints) is attached to the analysis.
+   *
+   * @param key The attribute key, usually the class of the attribute.
+   * @param factory A factory for the attribute.
+   * @return The attribute.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getAttribute(Class<T> key, Supplier<? extends T> factory) {
+    Object attribute = attributes.get(key);
+    if (attribute == null) {
+      attribute = attributes.computeIfAbsent(key, k -> factory.get());
+    }
+    return (T) attribute;
+  }
+
+  /**
+   * Releases all the state of this analysis. The context should not be used afterwards.
+   */
+  public void close() {
+    attributes.clear();
+    results.clear();
+    pools.clearAll();
+    model = null;
+    iterationSolver = new IterationSolver();
+    if (ownsSootGlobals) {
+      sootGlobals = null;
+    }
+  }
+
+  /*
+   * The Soot globals of a context are created when Soot is first used in the context.
+   */
+  private G getSootGlobals() {
+    G result = sootGlobals;
+    if (result == null) {
+      synchronized (this) {
+        result = sootGlobals;
+        if (result == null) {
+          result = new G();
+          sootGlobals = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /*
+   * Soot keeps its state in a global G object. Once a context owns Soot globals, G.v() is
+   * redirected to the G of the current context. The default context keeps the original G.
+   */
+  private static synchronized void installSootGlobals() {
+    if (sootGlobalsInstalled) {
+      return;
+    }
+    defaultContext.sootGlobals = G.v();
+    G.setGlobalObjectGetter(new G.GlobalObjectGetter() {
+      @Override
+      public G getG() {
+        return current().getSootGlobals();
+      }
+
+      @Override
+      public void reset() {
+        current().sootGlobals = new G();
+      }
+    });
+    sootGlobalsInstalled = true;
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Machine-readable metrics of one analysis: phase timers, counters, properties and heap gauges.
+ * Phases can be repeated (e.g., solver iterations), in which case every run is recorded. The heap
+ * is sampled at the start and at the end of every phase.
+ *
+ * <p>
+ * There is one instance per {@link AnalysisContext}. The report is written as JSON with
+ * {@link #writeJson(File)}.
+ * </p>
+ */
+public class AnalysisMetrics {
+  private final long startTime = System.currentTimeMillis();
+  private final Map<String, List<Long>> phases = new LinkedHashMap<>();
+  private final Map<String, Long> counters = new LinkedHashMap<>();
+  private final Map<String, String> properties = new LinkedHashMap<>();
+  private long peakUsedHeap = 0;
+
+  AnalysisMetrics() {
+  }
+
+  /**
+   * Returns the metrics of the current analysis context.
+   *
+   * @return The metrics of the current analysis context.
+   */
+  public static AnalysisMetrics v() {
+    return AnalysisContext.current().metrics;
+  }
+
+  /**
+   * A running phase, which is recorded when closed.
+   */
+  public final class Phase implements AutoCloseable {
+    private final String name;
+    private final long start;
+
+    private Phase(String name) {
+      this.name = name;
+      this.start = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+      recordPhase(name, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Starts a phase. The phase ends when the returned object is closed, which is meant to be done
+   * with a try-with-resources statement.
+   *
+   * @param name The phase name.
+   * @return The running phase.
+   */
+  public Phase startPhase(String name) {
+    sampleHeap();
+    return new Phase(name);
+  }
+
+  /**
+   * Records a run of a phase.
+   *
+   * @param name The phase name.
+   * @param nanos The duration of the run, in nanoseconds.
+   */
+  public void recordPhase(String name, long nanos) {
+    synchronized (this) {
+      List<Long> runs = phases.get(name);
+      if (runs == null) {
+        runs = new ArrayList<>();
+        phases.put(name, runs);
+      }
+      runs.add(nanos);
+    }
+    sampleHeap();
+  }
+
+  /**
+   * Adds a value to a counter.
+   *
+   * @param name The counter name.
+   * @param delta The value to add.
+   */
+  public synchronized void increment(String name, long delta) {
+    Long value = counters.get(name);
+    counters.put(name, value == null ? delta : value + delta);
+  }
+
+  /**
+   * Sets the value of a counter.
+   *
+   * @param name The counter name.
+   * @param value The counter value.
+   */
+  public synchronized void setCounter(String name, long value) {
+    counters.put(name, value);
+  }
+
+  /**
+   * Sets a property of the analysis, such as a configuration choice made at run time.
+   *
+   * @param name The property name.
+   * @param value The property value.
+   */
+  public synchronized void setProperty(String name, String value) {
+    properties.put(name, value);
+  }
+
+  /**
+   * Returns the value of a counter.
+   *
+   * @param name The counter name.
+   * @return The counter value, 0 if it was never set.
+   */
+  public synchronized long getCounter(String name) {
+    Long value = counters.get(name);
+    return value == null ? 0 : value;
+  }
+
+  /**
+   * Returns the total duration of all the runs of a phase.
+   *
+   * @param name The phase name.
+   * @return The total duration in milliseconds, 0 if the phase never ran.
+   */
+  public synchronized long getPhaseMillis(String name) {
+    List<Long> runs = phases.get(name);
+    long total = 0;
+    if (runs != null) {
+      for (long run : runs) {
+        total += run;
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis(total);
+  }
+
+  /**
+   * Samples the used heap, to update the peak heap gauge.
+   */
+  public void sampleHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    synchronized (this) {
+      if (used > peakUsedHeap) {
+        peakUsedHeap = used;
+      }
+    }
+  }
+
+  /**
+   * Returns the report as a JSON object.
+   *
+   * @return The JSON report.
+   */
+  public synchronized JsonObject toJson() {
+    JsonObject report = new JsonObject();
+    report.addProperty("startTime", startTime);
+    report.addProperty("totalMillis", System.currentTimeMillis() - startTime);
+
+    JsonObject phasesObject = new JsonObject();
+    for (Map.Entry<String, List<Long>> entry : phases.entrySet()) {
+      long total = 0;
+      long max = 0;
+      JsonArray runs = new JsonArray();
+      for (long run : entry.getValue()) {
+        total += run;
+        max = Math.max(max, run);
+        runs.add(new JsonPrimitive(TimeUnit.NANOSECONDS.toMillis(run)));
+      }
+      JsonObject phase = new JsonObject();
+      phase.addProperty("count", entry.getValue().size());
+      phase.addProperty("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+      phase.addProperty("maxMillis", TimeUnit.NANOSECONDS.toMillis(max));
+      phase.add("runsMillis", runs);
+      phasesObject.add(entry.getKey(), phase);
+    }
+    report.add("phases", phasesObject);
+
+    JsonObject countersObject = new JsonObject();
+    for (Map.Entry<String, Long> entry : counters.entrySet()) {
+      countersObject.addProperty(entry.getKey(), entry.getValue());
+    }
+    report.add("counters", countersObject);
+
+    JsonObject propertiesObject = new JsonObject();
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      propertiesObject.addProperty(entry.getKey(), entry.getValue());
+    }
+    report.add("properties", propertiesObject);
+
+    JsonObject heap = new JsonObject();
+    heap.addProperty("peakUsedBytes", peakUsedHeap);
+    heap.addProperty("jvmPeakUsedBytes", getJvmPeakHeap());
+    heap.addProperty("maxBytes", Runtime.getRuntime().maxMemory());
+    report.add("heap", heap);
+
+    return report;
+  }
+
+  /**
+   * Writes the JSON report to a file.
+   *
+   * @param file The output file.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeJson(File file) throws IOException {
+    sampleHeap();
+    JsonObject report = toJson();
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+    }
+  }
+
+  /*
+   * The peak usage of the heap memory pools since the JVM started. Unlike the sampled peak, this
+   * catches peaks between samples, but it is shared by all the analyses of the JVM.
+   */
+  private static long getJvmPeakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  @Override
+  public String toString() {
+    return toJson().toString();
+  }
+}
@@ -24,14 +24,17 @@ import soot.jimple.infoflow.solver.cfg.InfoflowCFG;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.psu.cse.siis.coal.arguments.ClassParameterSummaries;
+import edu.psu.cse.siis.coal.transformers.WideningPolicy;
 
 /**
  * Singleton with global analysis parameters.
  */
 public class AnalysisParameters {
-  private static AnalysisParameters instance = new AnalysisParameters();
-
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private Set<String> analysisClasses;
@@ -39,7 +42,13 @@ public class AnalysisParameters {
   private InfoflowCFG icfg;
   private boolean inferNonModeledTypes = true;
   private boolean useShimple = false;
+  private boolean incremental = true;
   private int threadCount;
+  private CallGraphAlgorithm callGraphAlgorithm = CallGraphAlgorithm.CHA;
+  private boolean eagerConstraintCollection = false;
+  private int summaryDepthBudget = ClassParameterSummaries.DEFAULT_DEPTH_BUDGET;
+  private WideningPolicy defaultWideningPolicy = WideningPolicy.DEFAULT;
+  private final Map<String, WideningPolicy> wideningPolicies = new ConcurrentHashMap<>();
 
   /**
    * Adds classes to the set of analysis classes. The analysis classes are the set of classes
@@ -92,6 +101,26 @@ public class AnalysisParameters {
     return iterative;
   }
 
+  /**
+   * Sets whether flow functions and the edge functions that do not refer to other COAL values are
+   * kept from one iteration to the next. The default value is true.
+   * 
+   * @param incremental The value of the flag.
+   */
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * Determines if iterations after the first one reuse the flow and edge functions that do not
+   * depend on the previous iteration.
+   * 
+   * @return True if the iterations are incremental.
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
   /**
    * Sets the interprocedural control flow graph for the analysis.
    * 
@@ -133,6 +162,59 @@ public class AnalysisParameters {
     this.threadCount = threadCount;
   }
 
+  /**
+   * Sets the algorithm used to build the call graph.
+   * 
+   * @param callGraphAlgorithm The call graph algorithm, possibly {@link CallGraphAlgorithm#AUTO}.
+   */
+  public void setCallGraphAlgorithm(CallGraphAlgorithm callGraphAlgorithm) {
+    this.callGraphAlgorithm = callGraphAlgorithm;
+  }
+
+  /**
+   * Sets the flag that determines if the string constraints of the application methods are
+   * collected before the propagation rather than on demand.
+   * 
+   * @param eagerConstraintCollection The value of the flag.
+   */
+  public void setEagerConstraintCollection(boolean eagerConstraintCollection) {
+    this.eagerConstraintCollection = eagerConstraintCollection;
+  }
+
+  /**
+   * Sets the maximum number of nested class parameter summaries that a query computes.
+   * {@link ClassParameterSummaries#DEFAULT_DEPTH_BUDGET} by default.
+   * 
+   * @param summaryDepthBudget The maximum number of nested summaries.
+   */
+  public void setSummaryDepthBudget(int summaryDepthBudget) {
+    this.summaryDepthBudget = summaryDepthBudget;
+  }
+
+  /**
+   * Sets the policy used to widen the edge functions of the symbols of a modeled type.
+   * 
+   * @param modeledType The fully-qualified name of a modeled type.
+   * @param wideningPolicy The widening policy, or null to use the default policy.
+   */
+  public void setWideningPolicy(String modeledType, WideningPolicy wideningPolicy) {
+    if (wideningPolicy == null) {
+      wideningPolicies.remove(modeledType);
+    } else {
+      wideningPolicies.put(modeledType, wideningPolicy);
+    }
+  }
+
+  /**
+   * Sets the policy used to widen the edge functions of the modeled types without a specific
+   * policy. {@link WideningPolicy#DEFAULT} by default.
+   * 
+   * @param wideningPolicy The default widening policy.
+   */
+  public void setDefaultWideningPolicy(WideningPolicy wideningPolicy) {
+    this.defaultWideningPolicy = wideningPolicy;
+  }
+
   /**
    * Determines whether hotspot values should be inferred for values that are not modeled using
    * COAL.
@@ -161,15 +243,55 @@ public class AnalysisParameters {
     return threadCount;
   }
 
+  /**
+   * Returns the algorithm that should be used to build the call graph. CHA by default.
+   * 
+   * @return The call graph algorithm, possibly {@link CallGraphAlgorithm#AUTO}.
+   */
+  public CallGraphAlgorithm getCallGraphAlgorithm() {
+    return callGraphAlgorithm;
+  }
+
+  /**
+   * Determines if the string constraints of the application methods should be collected before the
+   * propagation. They are collected on demand by default.
+   * 
+   * @return True if the string constraints should be collected before the propagation.
+   */
+  public boolean isEagerConstraintCollection() {
+    return eagerConstraintCollection;
+  }
+
+  /**
+   * Returns the maximum number of nested class parameter summaries that a query computes.
+   * 
+   * @return The summary depth budget.
+   */
+  public int getSummaryDepthBudget() {
+    return summaryDepthBudget;
+  }
+
+  /**
+   * Returns the policy used to widen the edge functions of the symbols of a type.
+   * 
+   * @param modeledType The fully-qualified name of a modeled type.
+   * @return The widening policy for the type, or the default policy if the type does not have a
+   *         specific one.
+   */
+  public WideningPolicy getWideningPolicy(String modeledType) {
+    WideningPolicy wideningPolicy = modeledType == null ? null : wideningPolicies.get(modeledType);
+    return wideningPolicy == null ? defaultWideningPolicy : wideningPolicy;
+  }
+
   /**
    * Returns the singleton instance for this class.
    * 
    * @return The singleton instance for this class.
    */
   public static AnalysisParameters v() {
-    return instance;
+    return AnalysisContext.current().analysisParameters;
   }
 
-  private AnalysisParameters() {
+  AnalysisParameters() {
   }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.Locale;
+
+import soot.jimple.infoflow.InfoflowConfiguration;
+
+/**
+ * The call graph algorithms that can be used to build the ICFG of the propagation problem, from
+ * the cheapest and least precise to the most expensive and most precise. More precise call graphs
+ * have fewer spurious edges, which the IDE solver does not have to traverse, but they take longer
+ * to build and need more memory.
+ */
+public enum CallGraphAlgorithm {
+  CHA(InfoflowConfiguration.CallgraphAlgorithm.CHA),
+  RTA(InfoflowConfiguration.CallgraphAlgorithm.RTA),
+  VTA(InfoflowConfiguration.CallgraphAlgorithm.VTA),
+  SPARK(InfoflowConfiguration.CallgraphAlgorithm.SPARK),
+  /**
+   * Selects one of the other algorithms from the size of the application and the heap budget.
+   */
+  AUTO(null);
+
+  /**
+   * Above this number of application classes, CHA produces so many spurious edges that the cost
+   * of RTA is paid back by the solver.
+   */
+  static final int SMALL_APPLICATION_CLASS_COUNT = 1000;
+
+  /**
+   * The heap that SPARK needs per application class, including the library code it reaches. VTA
+   * runs on the same pointer assignment graph and needs about as much.
+   */
+  static final long SPARK_BYTES_PER_CLASS = 512 * 1024;
+
+  /**
+   * The heap that is kept for the IDE solver, whatever the call graph.
+   */
+  static final long SOLVER_RESERVED_BYTES = 1024 * 1024 * 1024;
+
+  private final InfoflowConfiguration.CallgraphAlgorithm infoflowAlgorithm;
+
+  private CallGraphAlgorithm(InfoflowConfiguration.CallgraphAlgorithm infoflowAlgorithm) {
+    this.infoflowAlgorithm = infoflowAlgorithm;
+  }
+
+  /**
+   * Returns the algorithm with a given name.
+   *
+   * @param name The name of the algorithm, case insensitive (e.g., "spark").
+   * @return The algorithm.
+   * @throws IllegalArgumentException if no algorithm has that name.
+   */
+  public static CallGraphAlgorithm fromName(String name) {
+    return valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Returns the concrete algorithm that should be used for an application. This is the algorithm
+   * itself, unless it is {@link #AUTO}, in which case:
+   * <ul>
+   * <li>SPARK is used if the heap budget, once the solver share is set aside, covers the estimated
+   * cost of the points-to analysis;</li>
+   * <li>otherwise, CHA is used for small applications and RTA for the other ones.</li>
+   * </ul>
+   *
+   * @param applicationClassCount The number of application classes.
+   * @param maxHeapBytes The maximum heap size of the JVM.
+   * @return A concrete algorithm, never {@link #AUTO}.
+   */
+  public CallGraphAlgorithm resolve(int applicationClassCount, long maxHeapBytes) {
+    if (this != AUTO) {
+      return this;
+    }
+
+    long sparkBudget = maxHeapBytes - SOLVER_RESERVED_BYTES;
+    if (sparkBudget >= applicationClassCount * SPARK_BYTES_PER_CLASS) {
+      return SPARK;
+    }
+    return applicationClassCount <= SMALL_APPLICATION_CLASS_COUNT ? CHA : RTA;
+  }
+
+  /**
+   * Returns the corresponding FlowDroid call graph algorithm.
+   *
+   * @return The FlowDroid algorithm.
+   * @throws IllegalStateException if this is {@link #AUTO}, which should be resolved first.
+   */
+  public InfoflowConfiguration.CallgraphAlgorithm toInfoflowAlgorithm() {
+    if (infoflowAlgorithm == null) {
+      throw new IllegalStateException(this + " should be resolved before building the call graph");
+    }
+    return infoflowAlgorithm;
+  }
+}
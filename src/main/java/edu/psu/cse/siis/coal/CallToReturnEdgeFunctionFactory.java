@@ -81,11 +81,11 @@ public class CallToReturnEdgeFunctionFactory {
               logger.debug("Stmt " + callSite);
               logger.debug("Returning "
                   + PropagationTransformerFactory.makeTransformer(callSite, arguments,
-                      !callNode.equals(base)));
+                      !callNode.equals(base), base.getType().toString()));
             }
 
             return PropagationTransformerFactory.makeTransformer(callSite, arguments,
-                !callNode.equals(base));
+                !callNode.equals(base), base.getType().toString());
           }
         }
       } else {
@@ -97,7 +97,8 @@ public class CallToReturnEdgeFunctionFactory {
             Value leftValue = definitionStmt.getLeftOp();
 
             if (leftValue.equals(returnSideNode)) {
-              return PropagationTransformerFactory.makeTransformer(callSite, arguments, false);
+              return PropagationTransformerFactory.makeTransformer(callSite, arguments, false,
+                  leftValue.getType().toString());
             }
           }
         } else if (callSite instanceof DefinitionStmt) {
@@ -109,7 +110,8 @@ public class CallToReturnEdgeFunctionFactory {
             if (callNode.equals(invokeExpr.getArg(arguments[0].getArgnum()[0]))
                 && returnSideNode.equals(definitionStmt.getLeftOp())) {
               Argument[] extraArguments = Arrays.copyOfRange(arguments, 1, arguments.length);
-              return PropagationTransformerFactory.makeTransformer(callSite, extraArguments, false);
+              return PropagationTransformerFactory.makeTransformer(callSite, extraArguments, false,
+                  definitionStmt.getLeftOp().getType().toString());
             }
           }
         }
@@ -31,6 +31,8 @@ public class CommandLineArguments {
   private String classpath;
   private String input;
   private String output;
+  private String apk;
+  private String sootOutput;
   private boolean traverseModeled = false;
 
   /**
@@ -156,6 +158,50 @@ public class CommandLineArguments {
     this.output = output;
   }
 
+  /**
+   * Gets the application package (APK) to analyze, which is the input by default.
+   * 
+   * @return The path to the APK.
+   * 
+   * @see #setApk
+   */
+  public String getApk() {
+    return apk != null ? apk : input;
+  }
+
+  /**
+   * Sets the application package (APK) to analyze, when it is not the input itself.
+   * 
+   * @param apk The path to the APK.
+   * 
+   * @see #getApk
+   */
+  public void setApk(String apk) {
+    this.apk = apk;
+  }
+
+  /**
+   * Gets the Soot output directory, which is sootOutput by default.
+   * 
+   * @return The Soot output directory.
+   * 
+   * @see #setSootOutput
+   */
+  public String getSootOutput() {
+    return sootOutput != null ? sootOutput : "sootOutput";
+  }
+
+  /**
+   * Sets the Soot output directory.
+   * 
+   * @param sootOutput The Soot output directory.
+   * 
+   * @see #getSootOutput
+   */
+  public void setSootOutput(String sootOutput) {
+    this.sootOutput = sootOutput;
+  }
+
   /**
    * Sets the flag that determines if propagation should be done through the modeled classes.
    * 
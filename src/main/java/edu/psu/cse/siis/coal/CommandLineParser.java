@@ -29,6 +29,8 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.psu.cse.siis.coal.transformers.WideningPolicy;
+
 /**
  * An abstract parser for command line options. Subclasses should implement
  * {@link #parseAnalysisSpecificArguments} and {@link #printHelp}.
@@ -36,6 +38,11 @@ import org.slf4j.LoggerFactory;
  * @param <A> A {@link CommandLineArguments} parameter.
  */
 public abstract class CommandLineParser<A extends CommandLineArguments> {
+  /**
+   * The type name that sets the default widening policy in the {@code -widening} option.
+   */
+  public static final String DEFAULT_WIDENING = "default";
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   /**
@@ -75,8 +82,13 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
     commandLineArguments.setInput(commandLine.getOptionValue("in"));
     commandLineArguments.setClasspath(commandLine.getOptionValue("cp") + File.pathSeparator + commandLineArguments.getInput() + File.pathSeparator);
     commandLineArguments.setOutput(commandLine.getOptionValue("out"));
+    commandLineArguments.setApk(commandLine.getOptionValue("apk"));
+    commandLineArguments.setSootOutput(commandLine.getOptionValue("sootout"));
     commandLineArguments.setTraverseModeled(commandLine.hasOption("traversemodeled"));
     AnalysisParameters.v().setInferNonModeledTypes(!commandLine.hasOption("modeledtypesonly"));
+    AnalysisParameters.v().setIncremental(!commandLine.hasOption("fulliterations"));
+    AnalysisParameters.v().setEagerConstraintCollection(
+        commandLine.hasOption("eagerconstraints"));
 
     int threadCount;
     try {
@@ -92,9 +104,70 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
     }
     AnalysisParameters.v().setThreadCount(threadCount);
 
+    if (commandLineArguments.hasOption("summarydepth")) {
+      int summaryDepthBudget;
+      try {
+        summaryDepthBudget =
+            ((Number) commandLineArguments.getParsedOptionValue("summarydepth")).intValue();
+      } catch (ParseException exception) {
+        logger.error("Could not parse summary depth budget: "
+            + commandLineArguments.getOptionValue("summarydepth"), exception);
+        return null;
+      }
+      if (summaryDepthBudget < 0) {
+        logger.error("Summary depth budget should not be negative: " + summaryDepthBudget);
+        return null;
+      }
+      AnalysisParameters.v().setSummaryDepthBudget(summaryDepthBudget);
+    }
+
+    if (commandLineArguments.hasOption("callgraph")) {
+      String algorithm = commandLineArguments.getOptionValue("callgraph");
+      try {
+        AnalysisParameters.v().setCallGraphAlgorithm(CallGraphAlgorithm.fromName(algorithm));
+      } catch (IllegalArgumentException exception) {
+        logger.error("Unknown call graph algorithm: " + algorithm, exception);
+        return null;
+      }
+    }
+
+    if (commandLineArguments.hasOption("widening")) {
+      for (String wideningPolicies : commandLineArguments.getOptionValues("widening")) {
+        for (String widening : wideningPolicies.split(",")) {
+          try {
+            setWideningPolicy(widening);
+          } catch (IllegalArgumentException exception) {
+            logger.error("Invalid widening policy: " + widening, exception);
+            return null;
+          }
+        }
+      }
+    }
+
     return commandLineArguments;
   }
 
+  /**
+   * Sets a widening policy given as {@code <type>=<value limit>[:eager|:exact]}, where the type is
+   * either a fully-qualified modeled type or {@link #DEFAULT_WIDENING}.
+   * 
+   * @param widening The widening policy of a type.
+   * @throws IllegalArgumentException if the policy is malformed.
+   */
+  private void setWideningPolicy(String widening) {
+    int separator = widening.lastIndexOf('=');
+    if (separator < 1) {
+      throw new IllegalArgumentException("Expected <type>=<value limit>[:eager|:exact]");
+    }
+    String modeledType = widening.substring(0, separator).trim();
+    WideningPolicy wideningPolicy = WideningPolicy.fromString(widening.substring(separator + 1));
+    if (DEFAULT_WIDENING.equals(modeledType)) {
+      AnalysisParameters.v().setDefaultWideningPolicy(wideningPolicy);
+    } else {
+      AnalysisParameters.v().setWideningPolicy(modeledType, wideningPolicy);
+    }
+  }
+
   /**
    * Populates the analysis-specific command line options.
    * 
@@ -130,11 +203,30 @@ public abstract class CommandLineParser<A extends CommandLineArguments> {
         .argName("input").required().longOpt("input").build());
     options.addOption(Option.builder("out").desc("The output directory or file.").hasArg()
         .argName("output").longOpt("output").build());
+    options.addOption(Option.builder("apk")
+        .desc("The APK to analyze, if it is not the input itself.").hasArg().argName("apk")
+        .build());
+    options.addOption(Option.builder("sootout").desc("The Soot output directory.").hasArg()
+        .argName("soot output directory").build());
     options.addOption(Option.builder("traversemodeled").desc("Propagate through modeled classes.")
         .hasArg(false).build());
     options.addOption("modeledtypesonly", false, "Only infer modeled types.");
+    options.addOption("fulliterations", false,
+        "Rebuild all flow and edge functions at every iteration.");
+    options.addOption("eagerconstraints", false,
+        "Collect the string constraints of the application methods before the propagation.");
     options.addOption(Option.builder("threadcount")
         .desc("The maximum number of threads that should be used.").hasArg()
         .argName("thread count").type(Number.class).build());
+    options.addOption(Option.builder("callgraph")
+        .desc("The call graph algorithm: cha (default), rta, vta, spark or auto.").hasArg()
+        .argName("algorithm").build());
+    options.addOption(Option.builder("summarydepth")
+        .desc("The maximum number of nested class parameter summaries computed by a query.")
+        .hasArg().argName("depth budget").type(Number.class).build());
+    options.addOption(Option.builder("widening")
+        .desc("Comma-separated widening policies <type>=<value limit>[:eager|:exact], "
+            + "where the type is a modeled type or " + DEFAULT_WIDENING + ".")
+        .hasArg().argName("policies").build());
   }
 }
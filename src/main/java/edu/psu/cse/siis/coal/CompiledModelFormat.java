@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.psu.cse.siis.coal.arguments.Argument;
+import edu.psu.cse.siis.coal.arguments.Field;
+
+/**
+ * The binary format of compiled COAL models.
+ *
+ * <p>
+ * A compiled model starts with a magic number and a format version, followed by a table of all the
+ * strings of the model, and tables of the fields, arguments, argument arrays and method
+ * descriptions, which refer to each other and to strings by index. Objects that are shared in the
+ * model are only written once, and all references to a string resolve to the same instance when
+ * the model is read. The model sections (modeled types, modifiers, sources, queries, etc.) come
+ * last.
+ * </p>
+ *
+ * <p>
+ * Reading only creates model objects from plain data, so a compiled model cannot trigger the
+ * execution of arbitrary code the way a Java serialized object can. Any inconsistency (bad magic
+ * number, unknown version, out-of-range index, truncated file) is reported as an
+ * {@link IOException}.
+ * </p>
+ */
+final class CompiledModelFormat {
+  static final int MAGIC = 0x434f414c; // "COAL"
+  static final short VERSION = 1;
+
+  private static final int NULL = -1;
+
+  private CompiledModelFormat() {
+  }
+
+  /**
+   * Writes a model.
+   *
+   * @param model The model to write.
+   * @param outputStream The output stream, which is not closed.
+   * @throws IOException if the model cannot be written.
+   */
+  static void write(Model model, OutputStream outputStream) throws IOException {
+    new Writer(model).write(new DataOutputStream(outputStream));
+  }
+
+  /**
+   * Reads a model.
+   *
+   * @param buffer A buffer containing a compiled model, e.g., a mapped file.
+   * @return The model.
+   * @throws IOException if the buffer does not contain a valid compiled model.
+   */
+  static Model read(ByteBuffer buffer) throws IOException {
+    try {
+      return new Reader(buffer).read();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated compiled model", e);
+    }
+  }
+
+  /*
+   * Collects the strings and objects of a model into tables, then writes the tables and the
+   * sections.
+   */
+  private static class Writer {
+    private final Model model;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<String> stringTable = new ArrayList<>();
+    private final Map<Field, Integer> fields = new IdentityHashMap<>();
+    private final List<Field> fieldTable = new ArrayList<>();
+    private final Map<Argument, Integer> arguments = new IdentityHashMap<>();
+    private final List<Argument> argumentTable = new ArrayList<>();
+    private final Map<Argument[], Integer> argumentArrays = new IdentityHashMap<>();
+    private final List<Argument[]> argumentArrayTable = new ArrayList<>();
+    private final Map<MethodDescription, Integer> methodDescriptions = new IdentityHashMap<>();
+    private final List<MethodDescription> methodDescriptionTable = new ArrayList<>();
+
+    private Writer(Model model) {
+      this.model = model;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      // Index everything first, so that the tables are complete before the sections refer to them.
+      for (String type : model.getModeledTypes()) {
+        string(type);
+      }
+      for (Map<String, MethodDescription> map : model.getMethodDescriptionMaps()) {
+        for (Map.Entry<String, MethodDescription> entry : map.entrySet()) {
+          string(entry.getKey());
+          methodDescription(entry.getValue());
+        }
+      }
+      for (Map<String, Argument[]> map : model.getArgumentMaps()) {
+        for (Map.Entry<String, Argument[]> entry : map.entrySet()) {
+          string(entry.getKey());
+          argumentArray(entry.getValue());
+        }
+      }
+      for (String excludedClass : model.getExcludedClasses()) {
+        string(excludedClass);
+      }
+
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+
+      out.writeInt(stringTable.size());
+      for (String string : stringTable) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+
+      out.writeInt(fieldTable.size());
+      for (Field field : fieldTable) {
+        out.writeInt(string(field.getName()));
+        out.writeInt(string(field.getType()));
+      }
+
+      out.writeInt(argumentTable.size());
+      for (Argument argument : argumentTable) {
+        writeArgument(out, argument);
+      }
+
+      out.writeInt(argumentArrayTable.size());
+      for (Argument[] argumentArray : argumentArrayTable) {
+        out.writeInt(argumentArray.length);
+        for (Argument argument : argumentArray) {
+          out.writeInt(arguments.get(argument));
+        }
+      }
+
+      out.writeInt(methodDescriptionTable.size());
+      for (MethodDescription methodDescription : methodDescriptionTable) {
+        out.writeInt(string(methodDescription.getBaseClass()));
+        out.writeInt(argumentArray(methodDescription.getArguments()));
+      }
+
+      writeStrings(out, model.getModeledTypes());
+      for (Map<String, MethodDescription> map : model.getMethodDescriptionMaps()) {
+        out.writeInt(map.size());
+        for (Map.Entry<String, MethodDescription> entry : map.entrySet()) {
+          out.writeInt(string(entry.getKey()));
+          out.writeInt(methodDescriptions.get(entry.getValue()));
+        }
+      }
+      for (Map<String, Argument[]> map : model.getArgumentMaps()) {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Argument[]> entry : map.entrySet()) {
+          out.writeInt(string(entry.getKey()));
+          out.writeInt(argumentArrays.get(entry.getValue()));
+        }
+      }
+      writeStrings(out, model.getExcludedClasses());
+      out.flush();
+    }
+
+    private void writeArgument(DataOutputStream out, Argument argument) throws IOException {
+      Field field = argument.getField();
+      out.writeInt(string(getDeclaredType(argument)));
+
+      int[] argnum = argument.getArgnum();
+      if (argnum == null) {
+        out.writeInt(NULL);
+      } else {
+        out.writeInt(argnum.length);
+        for (int value : argnum) {
+          out.writeInt(value);
+        }
+      }
+      writeStringArray(out, argument.getActions());
+      writeStringArray(out, argument.getInlineValues());
+
+      Map<String, String> properties = argument.getProperties();
+      if (properties == null) {
+        out.writeInt(NULL);
+      } else {
+        out.writeInt(properties.size());
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+          out.writeInt(string(entry.getKey()));
+          out.writeInt(string(entry.getValue()));
+        }
+      }
+
+      out.writeShort(argument.getCount());
+      out.writeInt(field == null ? NULL : fields.get(field));
+      out.writeInt(string(argument.getReferencedFieldName()));
+    }
+
+    /*
+     * The type of an argument defaults to the type of its field, in which case it is not written.
+     */
+    private static String getDeclaredType(Argument argument) {
+      Field field = argument.getField();
+      String type = argument.getType();
+      return field != null && type.equals(field.getType()) ? null : type;
+    }
+
+    private void writeStringArray(DataOutputStream out, String[] array) throws IOException {
+      if (array == null) {
+        out.writeInt(NULL);
+        return;
+      }
+      out.writeInt(array.length);
+      for (String string : array) {
+        out.writeInt(string(string));
+      }
+    }
+
+    private void writeStrings(DataOutputStream out, Set<String> set) throws IOException {
+      out.writeInt(set.size());
+      for (String string : set) {
+        out.writeInt(string(string));
+      }
+    }
+
+    private int string(String string) {
+      if (string == null) {
+        return NULL;
+      }
+      Integer index = strings.get(string);
+      if (index == null) {
+        index = stringTable.size();
+        strings.put(string, index);
+        stringTable.add(string);
+      }
+      return index;
+    }
+
+    private int field(Field field) {
+      Integer index = fields.get(field);
+      if (index == null) {
+        string(field.getName());
+        string(field.getType());
+        index = fieldTable.size();
+        fields.put(field, index);
+        fieldTable.add(field);
+      }
+      return index;
+    }
+
+    private int argument(Argument argument) {
+      Integer index = arguments.get(argument);
+      if (index == null) {
+        Field field = argument.getField();
+        if (field != null) {
+          field(field);
+        }
+        string(getDeclaredType(argument));
+        if (argument.getActions() != null) {
+          for (String action : argument.getActions()) {
+            string(action);
+          }
+        }
+        if (argument.getInlineValues() != null) {
+          for (String inlineValue : argument.getInlineValues()) {
+            string(inlineValue);
+          }
+        }
+        if (argument.getProperties() != null) {
+          for (Map.Entry<String, String> entry : argument.getProperties().entrySet()) {
+            string(entry.getKey());
+            string(entry.getValue());
+          }
+        }
+        string(argument.getReferencedFieldName());
+        index = argumentTable.size();
+        arguments.put(argument, index);
+        argumentTable.add(argument);
+      }
+      return index;
+    }
+
+    private int argumentArray(Argument[] argumentArray) {
+      Integer index = argumentArrays.get(argumentArray);
+      if (index == null) {
+        for (Argument argument : argumentArray) {
+          argument(argument);
+        }
+        index = argumentArrayTable.size();
+        argumentArrays.put(argumentArray, index);
+        argumentArrayTable.add(argumentArray);
+      }
+      return index;
+    }
+
+    private int methodDescription(MethodDescription methodDescription) {
+      Integer index = methodDescriptions.get(methodDescription);
+      if (index == null) {
+        string(methodDescription.getBaseClass());
+        argumentArray(methodDescription.getArguments());
+        index = methodDescriptionTable.size();
+        methodDescriptions.put(methodDescription, index);
+        methodDescriptionTable.add(methodDescription);
+      }
+      return index;
+    }
+  }
+
+  /*
+   * Reads the tables and the sections, checking every count and index against the data.
+   */
+  private static class Reader {
+    private final ByteBuffer buffer;
+    private String[] strings;
+    private Field[] fields;
+    private Argument[] arguments;
+    private Argument[][] argumentArrays;
+    private MethodDescription[] methodDescriptions;
+
+    private Reader(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    private Model read() throws IOException {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a compiled COAL model");
+      }
+      short version = buffer.getShort();
+      if (version != VERSION) {
+        throw new IOException("Unsupported compiled model version " + version + " (expected "
+            + VERSION + "), the model should be recompiled");
+      }
+
+      strings = new String[count()];
+      for (int i = 0; i < strings.length; ++i) {
+        byte[] bytes = new byte[count()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      fields = new Field[count()];
+      for (int i = 0; i < fields.length; ++i) {
+        fields[i] = new Field(string(), string());
+      }
+
+      arguments = new Argument[count()];
+      for (int i = 0; i < arguments.length; ++i) {
+        arguments[i] = readArgument();
+      }
+
+      argumentArrays = new Argument[count()][];
+      for (int i = 0; i < argumentArrays.length; ++i) {
+        Argument[] argumentArray = new Argument[count()];
+        for (int j = 0; j < argumentArray.length; ++j) {
+          argumentArray[j] = arguments[index(arguments.length)];
+        }
+        argumentArrays[i] = argumentArray;
+      }
+
+      methodDescriptions = new MethodDescription[count()];
+      for (int i = 0; i < methodDescriptions.length; ++i) {
+        String baseClass = string();
+        methodDescriptions[i] =
+            new MethodDescription(baseClass, argumentArrays[index(argumentArrays.length)]);
+      }
+
+      Set<String> modeledTypes = readStrings();
+      List<Map<String, MethodDescription>> methodDescriptionMaps = new ArrayList<>();
+      for (int i = 0; i < Model.METHOD_DESCRIPTION_MAP_COUNT; ++i) {
+        int size = count();
+        Map<String, MethodDescription> map = new HashMap<>(size * 2);
+        for (int j = 0; j < size; ++j) {
+          String key = string();
+          map.put(key, methodDescriptions[index(methodDescriptions.length)]);
+        }
+        methodDescriptionMaps.add(map);
+      }
+      List<Map<String, Argument[]>> argumentMaps = new ArrayList<>();
+      for (int i = 0; i < Model.ARGUMENT_MAP_COUNT; ++i) {
+        int size = count();
+        Map<String, Argument[]> map = new HashMap<>(size * 2);
+        for (int j = 0; j < size; ++j) {
+          String key = string();
+          map.put(key, argumentArrays[index(argumentArrays.length)]);
+        }
+        argumentMaps.add(map);
+      }
+      Set<String> excludedClasses = readStrings();
+
+      if (buffer.hasRemaining()) {
+        throw new IOException("Unexpected data at the end of the compiled model");
+      }
+
+      return new Model(modeledTypes, methodDescriptionMaps, argumentMaps, excludedClasses);
+    }
+
+    private Argument readArgument() throws IOException {
+      Argument argument = new Argument();
+      argument.setType(string());
+
+      int argnumLength = nullableCount();
+      if (argnumLength != NULL) {
+        int[] argnum = new int[argnumLength];
+        for (int i = 0; i < argnum.length; ++i) {
+          argnum[i] = buffer.getInt();
+        }
+        argument.setArgnum(argnum);
+      }
+      argument.setActions(readStringArray());
+      argument.setInlineValues(readStringArray());
+
+      int propertyCount = nullableCount();
+      for (int i = 0; i < propertyCount; ++i) {
+        String key = string();
+        argument.addProperty(key, string());
+      }
+
+      argument.setCount(buffer.getShort());
+      int field = buffer.getInt();
+      if (field != NULL) {
+        argument.setField(fields[check(field, fields.length)]);
+      }
+      argument.setReferencedFieldName(string());
+      return argument;
+    }
+
+    private String[] readStringArray() throws IOException {
+      int length = nullableCount();
+      if (length == NULL) {
+        return null;
+      }
+      String[] array = new String[length];
+      for (int i = 0; i < array.length; ++i) {
+        array[i] = string();
+      }
+      return array;
+    }
+
+    private Set<String> readStrings() throws IOException {
+      int size = count();
+      Set<String> set = new HashSet<>(size * 2);
+      for (int i = 0; i < size; ++i) {
+        set.add(string());
+      }
+      return set;
+    }
+
+    /*
+     * A string reference, which may be null.
+     */
+    private String string() throws IOException {
+      int index = buffer.getInt();
+      return index == NULL ? null : strings[check(index, strings.length)];
+    }
+
+    private int index(int length) throws IOException {
+      return check(buffer.getInt(), length);
+    }
+
+    private int check(int index, int length) throws IOException {
+      if (index < 0 || index >= length) {
+        throw new IOException("Invalid reference " + index + " in compiled model");
+      }
+      return index;
+    }
+
+    /*
+     * A count of elements, each of which takes at least one byte, so a count larger than the
+     * remaining data is invalid. This avoids allocating huge arrays for corrupted files.
+     */
+    private int count() throws IOException {
+      int count = buffer.getInt();
+      if (count < 0 || count > buffer.remaining()) {
+        throw new IOException("Invalid count " + count + " in compiled model");
+      }
+      return count;
+    }
+
+    private int nullableCount() throws IOException {
+      int position = buffer.position();
+      if (buffer.getInt(position) == NULL) {
+        buffer.getInt();
+        return NULL;
+      }
+      return count();
+    }
+  }
+}
@@ -40,7 +40,10 @@ import soot.jimple.toolkits.callgraph.CallGraphBuilder;
 import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
 import soot.options.Options;
 import edu.psu.cse.siis.coal.arguments.ArgumentValueManager;
+import edu.psu.cse.siis.coal.arguments.ClassParameterSummaries;
+import edu.psu.cse.siis.coal.arguments.MethodAnalysisCache;
 import edu.psu.cse.siis.coal.arguments.MethodReturnValueManager;
+import edu.psu.cse.siis.coal.arguments.StringValueAnalysis;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformerManager;
 
 import static soot.jimple.infoflow.InfoflowConfiguration.SootIntegrationMode.UseExistingInstance;
@@ -117,8 +120,12 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
 //  }
 
   @Override
+  @SuppressWarnings("try")
   protected void initializeAnalysis(A commandLineArguments) {
-    initSoot();
+    AnalysisMetrics metrics = AnalysisMetrics.v();
+    try (AnalysisMetrics.Phase phase = metrics.startPhase("coalSootInit")) {
+      initSoot(commandLineArguments);
+    }
     // FlowDroid
     InfoflowAndroidConfiguration conf = new InfoflowAndroidConfiguration();
     conf.setStopAfterFirstFlow(false);
@@ -128,25 +135,48 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
     conf.setFlowSensitiveAliasing(true);
     conf.setMergeDexFiles(true);
     conf.setSootIntegrationMode(UseExistingInstance);   // use existed soot instance.
-    conf.setCallgraphAlgorithm(InfoflowConfiguration.CallgraphAlgorithm.CHA);
+    CallGraphAlgorithm algorithm = selectCallGraphAlgorithm();
+    conf.setCallgraphAlgorithm(algorithm.toInfoflowAlgorithm());
     conf.getAnalysisFileConfig().setAndroidPlatformDir(GlobalRef.android_jar);
-    conf.getAnalysisFileConfig().setTargetAPKFile(GlobalRef.apkPath);
+    conf.getAnalysisFileConfig().setTargetAPKFile(commandLineArguments.getApk());
     conf.setWriteOutputFiles(false);
 
     SetupApplication app = new SetupApplication(conf);
     app.setCallbackFile("res/AndroidCallbacks.txt");
-    app.constructCallgraph();
-    logger.info("Construct call graph done.");
+    try (AnalysisMetrics.Phase phase = metrics.startPhase("callGraph")) {
+      app.constructCallgraph();
+    }
+    metrics.setCounter("callGraphEdges", Scene.v().getCallGraph().size());
+    metrics.setCounter("entryPoints", Scene.v().getEntryPoints().size());
+    logger.info("Construct call graph done (" + algorithm + ", "
+        + metrics.getCounter("callGraphEdges") + " edges in "
+        + metrics.getPhaseMillis("callGraph") + " ms).");
 
     BiDirICFGFactory icfgFactory;
     DefaultBiDiICFGFactory factory = new DefaultBiDiICFGFactory();
     factory.setIsAndroid(true);
     icfgFactory = factory;
     app.setIcfgFactory(factory);
-    InfoflowCFG cfg = (InfoflowCFG) icfgFactory.buildBiDirICFG(conf.getCallgraphAlgorithm(),
-            conf.getEnableExceptionTracking());
+    InfoflowCFG cfg;
+    try (AnalysisMetrics.Phase phase = metrics.startPhase("icfg")) {
+      cfg = (InfoflowCFG) icfgFactory.buildBiDirICFG(conf.getCallgraphAlgorithm(),
+          conf.getEnableExceptionTracking());
+    }
 
     AnalysisParameters.v().setIcfg(cfg);
+    ClassParameterSummaries.v().setDepthBudget(AnalysisParameters.v().getSummaryDepthBudget());
+
+    if (AnalysisParameters.v().isEagerConstraintCollection()) {
+      // Collect the string constraints of the reachable application methods up front (in
+      // parallel) rather than one method at a time from the IDE solver threads.
+      PropagationTimers.v().misc.start();
+      try (AnalysisMetrics.Phase phase = metrics.startPhase("constraintCollection")) {
+        StringValueAnalysis.initializeApplication();
+      }
+      PropagationTimers.v().misc.end();
+      logger.info("String constraint collection done.");
+    }
+
     PropagationProblem problem = new PropagationProblem(cfg);
     for (SootMethod ep : Scene.v().getEntryPoints()) {
       if (ep.isConcrete()) {
@@ -168,8 +198,21 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
 
       PropagationTimers.v().ideSolution.start();
       logger.info("Solving propagation problem (iteration " + iterationCounter + ")");
-      solver.solve();
+      try (AnalysisMetrics.Phase phase = metrics.startPhase("iteration")) {
+        solver.solve();
+      }
       PropagationTimers.v().ideSolution.end();
+      long builtEdgeFunctions = problem.takeBuiltEdgeFunctionCount();
+      long reusedEdgeFunctions = problem.takeReusedEdgeFunctionCount();
+      metrics.increment("iterations", 1);
+      metrics.increment("builtEdgeFunctions", builtEdgeFunctions);
+      metrics.increment("reusedEdgeFunctions", reusedEdgeFunctions);
+      // The values and transformers of the previous iterations that are no longer used are
+      // released.
+      Pool.expungeAll();
+      logger.info("Iteration " + iterationCounter + ": built " + builtEdgeFunctions
+          + " edge functions, reused " + reusedEdgeFunctions + ", " + Pool.totalSize()
+          + " pooled values");
 
       PropagationTimers.v().misc.start();
       if (!AnalysisParameters.v().isIterative() || IterationSolver.v().hasFoundFixedPoint()) {
@@ -181,9 +224,48 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
     PropagationTimers.v().misc.end();
 
     logger.info("Reached a fixed point");
+    logger.info("Propagation problem solved in " + metrics.getPhaseMillis("iteration")
+        + " ms with a " + algorithm + " call graph of " + metrics.getCounter("callGraphEdges")
+        + " edges.");
+
+    DefaultResultBuilder resultBuilder = new DefaultResultBuilder();
+    try (AnalysisMetrics.Phase phase = metrics.startPhase("resultBuilding")) {
+      Results.addResult(resultBuilder.buildResult(solver));
+    }
+    metrics.setCounter("reachableMethods", PropagationTimers.v().reachableMethods);
+    metrics.setCounter("reachableStatements", PropagationTimers.v().reachableStatements);
+    metrics.setCounter("methodCacheHits", MethodAnalysisCache.v().getHitCount());
+    metrics.setCounter("methodCacheMisses", MethodAnalysisCache.v().getMissCount());
+    metrics.setCounter("parameterSummaryHits", ClassParameterSummaries.v().getHitCount());
+    metrics.setCounter("parameterSummaryMisses", ClassParameterSummaries.v().getMissCount());
+    logger.info(MethodAnalysisCache.v().toString());
+    logger.info(ClassParameterSummaries.v().toString());
+    MethodAnalysisCache.v().clear();
+    ClassParameterSummaries.v().clear();
+  }
+
+  /**
+   * Determines the call graph algorithm of this analysis, resolving
+   * {@link CallGraphAlgorithm#AUTO} from the number of application classes and the maximum heap
+   * size. The choice is recorded in the metrics.
+   * 
+   * @return A concrete call graph algorithm.
+   */
+  private CallGraphAlgorithm selectCallGraphAlgorithm() {
+    CallGraphAlgorithm requested = AnalysisParameters.v().getCallGraphAlgorithm();
+    int applicationClassCount = Scene.v().getApplicationClasses().size();
+    long maxHeap = Runtime.getRuntime().maxMemory();
+    CallGraphAlgorithm algorithm = requested.resolve(applicationClassCount, maxHeap);
+    if (requested == CallGraphAlgorithm.AUTO) {
+      logger.info("Selected the " + algorithm + " call graph for " + applicationClassCount
+          + " application classes and a heap of " + (maxHeap >> 20) + " MB");
+    }
 
-    DefaultResultBuilder resultBuilder = new DefaultResultBuilder();;
-    Results.addResult(resultBuilder.buildResult(solver));
+    AnalysisMetrics metrics = AnalysisMetrics.v();
+    metrics.setProperty("callGraphAlgorithm", algorithm.name());
+    metrics.setProperty("requestedCallGraphAlgorithm", requested.name());
+    metrics.setCounter("applicationClasses", applicationClassCount);
+    return algorithm;
   }
 
   @Override
@@ -240,7 +322,14 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
     }
   }
 
-  private void initSoot() {
+  /**
+   * Loads the input application into Soot and runs the body packs. Subclasses may override this
+   * when the Scene has already been loaded by a previous phase.
+   * 
+   * @param commandLineArguments The command line arguments of the analysis, which give the APK and
+   *          the Soot output directory.
+   */
+  protected void initSoot(A commandLineArguments) {
     G.reset();
     Options.v().set_src_prec(Options.src_prec_apk);
     Options.v().set_full_resolver(true);
@@ -249,12 +338,12 @@ public class DefaultAnalysis<A extends CommandLineArguments> extends Analysis<A>
     Options.v().set_allow_phantom_refs(true);
     Options.v().ignore_resolution_errors();
     Options.v().set_no_writeout_body_releasing(true);
-    Options.v().set_output_dir(GlobalRef.WORKSPACE);
+    Options.v().set_output_dir(commandLineArguments.getSootOutput());
     Options.v().set_output_format(Options.output_format_none);
     Options.v().set_whole_program(true);
     Options.v().set_process_multiple_dex(true);
     Options.v().set_android_jars(GlobalRef.android_jar);
-    Options.v().set_process_dir(Collections.singletonList(GlobalRef.apkPath));
+    Options.v().set_process_dir(Collections.singletonList(commandLineArguments.getApk()));
     Options.v().set_prepend_classpath(true);
     Options.v().set_keep_line_number(true);
     Options.v().set_app(true);
@@ -35,7 +35,11 @@ public class DefaultCommandLineParser extends CommandLineParser<DefaultCommandLi
     System.out.println(COPYRIGHT);
     formatter.printHelp("coal -input <input directory> -classpath <classpath> "
         + "-[c]model <[compiled] model directory or files> [-traversemodeled] "
-        + "[-modeledtypesonly] [-threadcount <thread count>]", options);
+        + "[-modeledtypesonly] [-fulliterations] [-eagerconstraints] "
+        + "[-threadcount <thread count>] [-summarydepth <depth budget>] "
+        + "[-callgraph <cha|rta|vta|spark|auto>] "
+        + "[-widening <type>=<value limit>[:eager],...] [-apk <apk>] "
+        + "[-sootout <soot output directory>]", options);
   }
 
 }
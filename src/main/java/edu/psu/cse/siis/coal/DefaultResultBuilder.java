@@ -36,6 +36,7 @@ import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import edu.psu.cse.siis.coal.arguments.Argument;
 import edu.psu.cse.siis.coal.arguments.ArgumentValueManager;
+import edu.psu.cse.siis.coal.arguments.MethodAnalysisCache;
 import edu.psu.cse.siis.coal.values.BasePropagationValue;
 import edu.psu.cse.siis.coal.values.PropagationValue;
 
@@ -59,7 +60,7 @@ public class DefaultResultBuilder implements ResultBuilder {
                     && !Model.v().isExcludedClass(method.getDeclaringClass().getName())
                     && !method.getDeclaringClass().getName().equals("dummyMainClass")) {
                 ++PropagationTimers.v().reachableMethods;
-                ExceptionalUnitGraph cfg = new ExceptionalUnitGraph(method.getActiveBody());
+                ExceptionalUnitGraph cfg = MethodAnalysisCache.v().getUnitGraph(method);
 
                 Stack<Unit> stack = new Stack<>();
                 for (Unit unit : cfg.getHeads()) {
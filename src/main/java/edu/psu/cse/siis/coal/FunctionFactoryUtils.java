@@ -41,7 +41,6 @@ import soot.jimple.spark.sets.EmptyPointsToSet;
 public class FunctionFactoryUtils {
   private static final Logger logger = LoggerFactory.getLogger(FunctionFactoryUtils.class);
 
-  private static PointsToAnalysis pointsToAnalysis = null;
 
   /**
    * Gets the points-to set for a given value. The value can be, for example, a variable or a field.
@@ -50,9 +49,8 @@ public class FunctionFactoryUtils {
    * @return The points-to set for the input value.
    */
   public static PointsToSet getPointsToSetForValue(Value value) {
-    if (pointsToAnalysis == null) {
-      pointsToAnalysis = Scene.v().getPointsToAnalysis();
-    }
+    // Not cached: the points-to analysis belongs to the Soot scene of the current analysis.
+    PointsToAnalysis pointsToAnalysis = Scene.v().getPointsToAnalysis();
 
     if (value instanceof Local) {
       return pointsToAnalysis.reachingObjects((Local) value);
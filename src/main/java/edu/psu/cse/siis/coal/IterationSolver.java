@@ -21,6 +21,7 @@ package edu.psu.cse.siis.coal;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,10 +45,17 @@ import edu.psu.cse.siis.coal.values.TopPropagationValue;
 public class IterationSolver {
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  private PropagationSolver solver = null;
-  private static IterationSolver instance = new IterationSolver();
-  private Set<LocationIdentifier> currentTopValues;
+  // Written between iterations, read concurrently by the flow and edge functions.
+  private volatile PropagationSolver solver = null;
+  private volatile Set<LocationIdentifier> currentTopValues;
   private Set<LocationIdentifier> previousTopValues;
+  // Per-thread flag set when an edge function being built refers to another COAL value.
+  private final ThreadLocal<boolean[]> referencedValueRequested = new ThreadLocal<boolean[]>() {
+    @Override
+    protected boolean[] initialValue() {
+      return new boolean[1];
+    }
+  };
 
   private static final class LocationIdentifier {
     private final Unit stmt;
@@ -83,8 +91,16 @@ public class IterationSolver {
     }
   }
 
+  IterationSolver() {
+  }
+
+  /**
+   * Returns the iteration manager of the current analysis context.
+   * 
+   * @return The iteration manager of the current analysis context.
+   */
   public static IterationSolver v() {
-    return instance;
+    return AnalysisContext.current().iterationSolver;
   }
 
   /**
@@ -103,10 +119,32 @@ public class IterationSolver {
    * @param propagationSolver The solver from the previous iteration, or null if this is the first
    *          iteration.
    */
-  public synchronized void initialize(PropagationSolver propagationSolver) {
+  public void initialize(PropagationSolver propagationSolver) {
     solver = propagationSolver;
     previousTopValues = currentTopValues;
-    currentTopValues = new HashSet<>();
+    currentTopValues = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Starts recording, for the current thread, whether a referenced value is requested through
+   * {@link #makeTransformersFromReferencedValue}.
+   */
+  public void startReferenceTracking() {
+    referencedValueRequested.get()[0] = false;
+  }
+
+  /**
+   * Stops recording referenced value requests for the current thread.
+   * 
+   * @return True if a referenced value was requested since the last call to
+   *         {@link #startReferenceTracking}. In that case the result depends on the current
+   *         iteration and should not be reused in the next one.
+   */
+  public boolean stopReferenceTracking() {
+    boolean[] requested = referencedValueRequested.get();
+    boolean result = requested[0];
+    requested[0] = false;
+    return result;
   }
 
   /**
@@ -125,13 +163,13 @@ public class IterationSolver {
    */
   public Set<FieldTransformer> makeTransformersFromReferencedValue(Unit stmt, Value symbol,
       String field, String type, String operation) {
-    synchronized (this) {
-      if (solver == null) {
-        // This is the first iteration, return top.
-        currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
-        return Collections.singleton(ArgumentValueManager.v().getTopFieldTransformer(type,
-            operation));
-      }
+    referencedValueRequested.get()[0] = true;
+    PropagationSolver solver = this.solver;
+    if (solver == null) {
+      // This is the first iteration, return top.
+      currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
+      return Collections.singleton(ArgumentValueManager.v().getTopFieldTransformer(type,
+          operation));
     }
 
     if (logger.isDebugEnabled()) {
@@ -142,9 +180,7 @@ public class IterationSolver {
     if (referencedBaseValue == null || referencedBaseValue instanceof TopPropagationValue) {
       // This is not the first iteration, but we still got top.
       logger.info("Found top at " + stmt);
-      synchronized (this) {
-        currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
-      }
+      currentTopValues.add(new LocationIdentifier(stmt, symbol, field, type, operation));
       return Collections
           .singleton(ArgumentValueManager.v().getTopFieldTransformer(type, operation));
     }
@@ -18,22 +18,31 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
@@ -52,8 +61,9 @@ import edu.psu.cse.siis.coal.lang.PropagationParser;
  */
 public class Model implements Serializable {
   private static final long serialVersionUID = 1L;
+  static final int METHOD_DESCRIPTION_MAP_COUNT = 5;
+  static final int ARGUMENT_MAP_COUNT = 2;
 
-  private static Model instance;
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -66,6 +76,19 @@ public class Model implements Serializable {
   private Map<String, Argument[]> staticFieldToArgumentsMap = new HashMap<>();
   private Map<String, MethodDescription> queryToMethodDescriptionMap = new HashMap<>();
   private Set<String> excludedClasses = new HashSet<>();
+  // Built from excludedClasses on first use, once the model is complete.
+  private transient volatile PackageMatcher excludedClassMatcher;
+
+  // Kinds of method descriptions, which index the resolved arguments of an invoke site.
+  private static final int MODIFIER = 0;
+  private static final int GEN_MODIFIER = 1;
+  private static final int COPY_MODIFIER = 2;
+  private static final int SOURCE = 3;
+  private static final int QUERY = 4;
+  private static final int KIND_COUNT = 5;
+  // Marks a site that was resolved to no arguments.
+  private static final Argument[] NO_ARGUMENTS = new Argument[0];
+  private transient volatile LoadingCache<InvokeExpr, Argument[][]> resolvedInvokeSites;
 
   /**
    * Returns the singleton instance of this class. This class should be first initialized using
@@ -75,6 +98,7 @@ public class Model implements Serializable {
    * @return The singleton instance.
    */
   public static Model v() {
+    Model instance = AnalysisContext.current().model;
     if (instance == null) {
       throw new RuntimeException("Model was not initialized. Please make sure you call "
           + "loadModelFromDirectory(), loadModelFromFile() or loadCompiledModelFromFile()");
@@ -124,9 +148,11 @@ public class Model implements Serializable {
    */
   public static void loadModelFromDirectory(String modelDir) throws FileNotFoundException,
       ParseException {
-    if (instance == null) {
-      instance = new Model();
+    AnalysisContext context = AnalysisContext.current();
+    if (context.model == null) {
+      context.model = new Model();
     }
+    Model instance = context.model;
 
     PropagationParser.parseModelFromDirectory(instance, modelDir);
     instance.endInitialization();
@@ -142,35 +168,61 @@ public class Model implements Serializable {
    */
   public static void loadModelFromFile(String modelFilePath) throws FileNotFoundException,
       ParseException {
-    if (instance == null) {
-      instance = new Model();
+    AnalysisContext context = AnalysisContext.current();
+    if (context.model == null) {
+      context.model = new Model();
     }
 
-    PropagationParser.parseModelFromFile(instance, new File(modelFilePath));
+    PropagationParser.parseModelFromFile(context.model, new File(modelFilePath));
   }
 
   /**
-   * Loads the COAL model from a compiled COAL file. For the moment, this is simply a serialized
-   * Model object. There is no need to call {@link #endInitialization()} after this. This method can
-   * read a serialized file from inside a jar archive, on the condition that the path to the file
-   * starts with <code>/res/</code>. Compiling the model can be done using the {@link ModelCompiler}
-   * class.
+   * Loads the COAL model from a compiled COAL file (see {@link CompiledModelFormat}). There is no
+   * need to call {@link #endInitialization()} after this. Files are memory-mapped. This method can
+   * also read a compiled model from inside a jar archive, on the condition that the path to the
+   * file starts with <code>/res/</code>. Compiling the model can be done using the
+   * {@link ModelCompiler} class.
    * 
    * @param compiledModelFilePath The path to a compiled model file.
-   * @throws IOException if something goes wrong with the file operations.
-   * @throws ClassNotFoundException if something goes wrong with the deserialization.
+   * @throws IOException if something goes wrong with the file operations, or if the file is not a
+   *           valid compiled model.
    */
-  public static void loadModelFromCompiledFile(String compiledModelFilePath) throws IOException,
-      ClassNotFoundException {
-    InputStream inputStream;
+  public static void loadModelFromCompiledFile(String compiledModelFilePath) throws IOException {
+    ByteBuffer buffer;
     if (compiledModelFilePath.startsWith("/res/")) {
-      inputStream = Model.class.getResourceAsStream(compiledModelFilePath);
+      InputStream inputStream = Model.class.getResourceAsStream(compiledModelFilePath);
+      if (inputStream == null) {
+        throw new FileNotFoundException(compiledModelFilePath);
+      }
+      try {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+          outputStream.write(chunk, 0, read);
+        }
+        buffer = ByteBuffer.wrap(outputStream.toByteArray());
+      } finally {
+        inputStream.close();
+      }
     } else {
-      inputStream = new FileInputStream(compiledModelFilePath);
+      try (FileChannel channel = FileChannel.open(Paths.get(compiledModelFilePath))) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
     }
 
-    ObjectInputStream objectInputStream = new ObjectInputStream(inputStream);
-    instance = (Model) objectInputStream.readObject();
+    AnalysisContext.current().model = CompiledModelFormat.read(buffer);
+  }
+
+  /**
+   * Writes this model in the compiled format, which can be loaded with
+   * {@link #loadModelFromCompiledFile}.
+   * 
+   * @param outputStream The output stream, which is not closed.
+   * @throws IOException if something goes wrong with the file operations.
+   */
+  public void writeCompiledModel(OutputStream outputStream) throws IOException {
+    CompiledModelFormat.write(this, outputStream);
   }
 
   /**
@@ -190,7 +242,7 @@ public class Model implements Serializable {
    * @return An array of arguments if the invoke expression is for a modifier, null otherwise.
    */
   public Argument[] getArgumentsForMethod(InvokeExpr invokeExpr) {
-    return getArgumentsFromMethodDescription(signatureToArgumentsMap, invokeExpr);
+    return getArgumentsFromMethodDescription(MODIFIER, signatureToArgumentsMap, invokeExpr);
   }
 
   /**
@@ -201,7 +253,7 @@ public class Model implements Serializable {
    *         otherwise.
    */
   public Argument[] getArgumentsForGenMethod(InvokeExpr invokeExpr) {
-    return getArgumentsFromMethodDescription(genSignatureToArgumentsMap, invokeExpr);
+    return getArgumentsFromMethodDescription(GEN_MODIFIER, genSignatureToArgumentsMap, invokeExpr);
   }
 
   /**
@@ -213,7 +265,8 @@ public class Model implements Serializable {
    * @return An array of arguments if the invoke expression is for a copy modifier, null otherwise.
    */
   public Argument[] getArgumentsForCopyMethod(InvokeExpr invokeExpr) {
-    return getArgumentsFromMethodDescription(copySignatureToArgumentsMap, invokeExpr);
+    return getArgumentsFromMethodDescription(COPY_MODIFIER, copySignatureToArgumentsMap,
+        invokeExpr);
   }
 
   /**
@@ -245,7 +298,7 @@ public class Model implements Serializable {
    * @return An array of arguments if the invoke expression is for a COAL source, null otherwise.
    */
   public Argument[] getArgumentsForSource(InvokeExpr invokeExpr) {
-    return getArgumentsFromMethodDescription(sourceSignatureToArgumentsMap, invokeExpr);
+    return getArgumentsFromMethodDescription(SOURCE, sourceSignatureToArgumentsMap, invokeExpr);
   }
 
   /**
@@ -267,7 +320,7 @@ public class Model implements Serializable {
           return description.getArguments();
         }
       }
-      return getArgumentsFromMethodDescription(queryToMethodDescriptionMap, invokeExpr);
+      return getArgumentsFromMethodDescription(QUERY, queryToMethodDescriptionMap, invokeExpr);
     }
     return null;
   }
@@ -285,13 +338,51 @@ public class Model implements Serializable {
   }
 
   /**
-   * Returns the arguments associated with a method descriptor.
+   * Returns the arguments associated with a method descriptor. The result only depends on the
+   * invoke expression (its target, its kind and the type of its base) and on the class hierarchy,
+   * so it is resolved once per invoke site and cached.
    * 
+   * @param kind The kind of method descriptions, which indexes the cached results of a site.
    * @param signatureToMethodDescriptionMap A map from signatures to method descriptors.
    * @param invokeExpr An invoke expression.
    * @return An array of arguments if arguments are found for the method descriptor, null otherwise.
    */
-  private Argument[] getArgumentsFromMethodDescription(
+  private Argument[] getArgumentsFromMethodDescription(int kind,
+      Map<String, MethodDescription> signatureToMethodDescriptionMap, InvokeExpr invokeExpr) {
+    Argument[][] resolved = getResolvedInvokeSites().getUnchecked(invokeExpr);
+    Argument[] arguments = resolved[kind];
+    if (arguments == null) {
+      // Concurrent resolutions of the same site yield the same result, so races are harmless.
+      arguments =
+          resolveArgumentsFromMethodDescription(signatureToMethodDescriptionMap, invokeExpr);
+      resolved[kind] = arguments == null ? NO_ARGUMENTS : arguments;
+    }
+    return arguments == NO_ARGUMENTS ? null : arguments;
+  }
+
+  private LoadingCache<InvokeExpr, Argument[][]> getResolvedInvokeSites() {
+    LoadingCache<InvokeExpr, Argument[][]> result = resolvedInvokeSites;
+    if (result == null) {
+      synchronized (this) {
+        result = resolvedInvokeSites;
+        if (result == null) {
+          // Weak keys are compared by identity, and let the sites of discarded bodies be collected.
+          result =
+              CacheBuilder.newBuilder().weakKeys()
+                  .build(new CacheLoader<InvokeExpr, Argument[][]>() {
+                    @Override
+                    public Argument[][] load(InvokeExpr invokeExpr) {
+                      return new Argument[KIND_COUNT][];
+                    }
+                  });
+          resolvedInvokeSites = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private Argument[] resolveArgumentsFromMethodDescription(
       Map<String, MethodDescription> signatureToMethodDescriptionMap, InvokeExpr invokeExpr) {
     SootMethod method = invokeExpr.getMethod();
     String signature = method.getSignature();
@@ -336,7 +427,16 @@ public class Model implements Serializable {
    * @return True if the class should be excluded from the result.
    */
   public boolean isExcludedClass(String name) {
-    return excludedClasses.contains(name);
+    PackageMatcher matcher = excludedClassMatcher;
+    if (matcher == null) {
+      PackageMatcher.Builder builder = new PackageMatcher.Builder();
+      for (String excludedClass : excludedClasses) {
+        builder.addName(excludedClass);
+      }
+      matcher = builder.build();
+      excludedClassMatcher = matcher;
+    }
+    return matcher.matches(name);
   }
 
   /**
@@ -422,6 +522,7 @@ public class Model implements Serializable {
    */
   public void addExcludedClass(String name) {
     excludedClasses.add(name);
+    excludedClassMatcher = null;
   }
 
   /**
@@ -504,4 +605,40 @@ public class Model implements Serializable {
 
   private Model() {
   }
+
+  /**
+   * Creates a model from its contents, for {@link CompiledModelFormat}. The model is initialized.
+   */
+  Model(Set<String> modeledTypes, List<Map<String, MethodDescription>> methodDescriptionMaps,
+      List<Map<String, Argument[]>> argumentMaps, Set<String> excludedClasses) {
+    this.modeledTypes = modeledTypes;
+    signatureToArgumentsMap = methodDescriptionMaps.get(0);
+    genSignatureToArgumentsMap = methodDescriptionMaps.get(1);
+    copySignatureToArgumentsMap = methodDescriptionMaps.get(2);
+    sourceSignatureToArgumentsMap = methodDescriptionMaps.get(3);
+    queryToMethodDescriptionMap = methodDescriptionMaps.get(4);
+    copyConstructors = argumentMaps.get(0);
+    staticFieldToArgumentsMap = argumentMaps.get(1);
+    this.excludedClasses = excludedClasses;
+    endInitialization();
+  }
+
+  /*
+   * The maps from signatures to method descriptions, in the order expected by the constructor.
+   */
+  List<Map<String, MethodDescription>> getMethodDescriptionMaps() {
+    return Arrays.asList(signatureToArgumentsMap, genSignatureToArgumentsMap,
+        copySignatureToArgumentsMap, sourceSignatureToArgumentsMap, queryToMethodDescriptionMap);
+  }
+
+  /*
+   * The maps from signatures to arguments, in the order expected by the constructor.
+   */
+  List<Map<String, Argument[]>> getArgumentMaps() {
+    return Arrays.asList(copyConstructors, staticFieldToArgumentsMap);
+  }
+
+  Set<String> getExcludedClasses() {
+    return excludedClasses;
+  }
 }
@@ -19,9 +19,10 @@
 package edu.psu.cse.siis.coal;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,8 +30,10 @@ import org.slf4j.LoggerFactory;
 import edu.psu.cse.siis.coal.lang.ParseException;
 
 /**
- * Compiler for COAL model. This class simply serializes COAL models. It should be called with the
- * input directory as the first argument and the destination file as the second argument.
+ * Compiler for COAL model. This class parses COAL models and writes them in the compiled format
+ * (see {@link Model#loadModelFromCompiledFile}). It should be called with the model paths (a
+ * directory, or files and directories separated by the path separator) as the first argument and
+ * the destination file as the second argument.
  */
 public class ModelCompiler {
   private static Logger logger = LoggerFactory.getLogger(ModelCompiler.class);
@@ -40,24 +43,41 @@ public class ModelCompiler {
   }
 
   /**
-   * Compiles a COAL model.
+   * Compiles a COAL model. The model is parsed in a separate analysis context, so this does not
+   * change the model of the current context. The output file is replaced atomically, so that
+   * concurrent compilations and loads never see a partial file.
    * 
-   * @param inputDir The input directory that contains the COAL specification files.
+   * @param modelPaths The COAL specification files or directories, separated by the path
+   *          separator.
    * @param outputPath The path to the output file.
    * @throws ParseException if something goes wrong with the COAL parsing.
    * @throws IOException if something goes wrong with the file operations.
    */
-  private static void compileModel(String inputDir, String outputPath) throws ParseException,
+  public static void compileModel(String modelPaths, String outputPath) throws ParseException,
       IOException {
-    logger.info("Compiling model from directory " + inputDir + " to " + outputPath);
-    Model.loadModelFromDirectory(inputDir);
+    logger.info("Compiling model from " + modelPaths + " to " + outputPath);
+    AnalysisContext context = new AnalysisContext();
+    AnalysisContext previous = context.enter();
+    try {
+      Model.loadModel(modelPaths);
+      Model model = Model.v();
+      model.endInitialization();
 
-    File outputFile = new File(outputPath);
-    outputFile.getParentFile().mkdirs();
-    FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-    ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
-    objectOutputStream.writeObject(Model.v());
-    objectOutputStream.close();
-    fileOutputStream.close();
+      File outputFile = new File(outputPath).getAbsoluteFile();
+      outputFile.getParentFile().mkdirs();
+      File tmpFile = File.createTempFile(outputFile.getName(), ".tmp", outputFile.getParentFile());
+      try {
+        try (OutputStream outputStream = Files.newOutputStream(tmpFile.toPath())) {
+          model.writeCompiledModel(outputStream);
+        }
+        Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        tmpFile.delete();
+      }
+    } finally {
+      context.exit(previous);
+      context.close();
+    }
   }
 }
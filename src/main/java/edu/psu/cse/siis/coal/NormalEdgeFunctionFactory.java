@@ -73,15 +73,15 @@ public class NormalEdgeFunctionFactory {
                 Model.v().getArgumentsForStaticField(staticFieldRef.getField().getSignature());
 
             EdgeFunction<BasePropagationValue> result =
-                PropagationTransformerFactory.makeTransformer(null, arguments, false);
+                PropagationTransformerFactory.makeTransformer(null, arguments, false, type);
             if (arguments != null) {
               if (logger.isDebugEnabled()) {
                 logger.debug("Returning " + result);
               }
-              return PropagationTransformerFactory.makeTransformer(null, arguments, false);
+              return PropagationTransformerFactory.makeTransformer(null, arguments, false, type);
             }
           } else if (right instanceof NullConstant) {
-            return PropagationTransformerFactory.makeTransformer(null, null, false);
+            return PropagationTransformerFactory.makeTransformer(null, null, false, type);
           }
         }
       }
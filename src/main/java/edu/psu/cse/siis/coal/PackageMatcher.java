@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable matcher for class names, which answers whether a class belongs to one of a set of
+ * packages (or, more generally, name prefixes) or is one of a set of classes. A lookup walks a
+ * character trie of the prefixes and names, so it takes time proportional to the length of the
+ * class name, regardless of how many prefixes there are.
+ *
+ * <p>
+ * Matchers are created with a {@link Builder} and are safe to share between threads.
+ * </p>
+ */
+public final class PackageMatcher {
+  private static final char[] NO_KEYS = new char[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  private final Node root;
+
+  private PackageMatcher(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Determines if a class name starts with one of the prefixes or is one of the names of this
+   * matcher.
+   * 
+   * @param name A fully-qualified class name.
+   * @return True if the name matches.
+   */
+  public boolean matches(String name) {
+    Node node = root;
+    for (int i = 0; i < name.length(); ++i) {
+      if (node.isPrefix) {
+        return true;
+      }
+      node = node.getChild(name.charAt(i));
+      if (node == null) {
+        return false;
+      }
+    }
+    return node.isPrefix || node.isName;
+  }
+
+  /**
+   * Builds {@link PackageMatcher} instances.
+   */
+  public static class Builder {
+    private final MutableNode root = new MutableNode();
+
+    /**
+     * Adds a prefix. All class names that start with it will match. A package is usually added with
+     * its trailing dot, e.g., "java.".
+     * 
+     * @param prefix A class name prefix.
+     * @return This builder.
+     */
+    public Builder addPrefix(String prefix) {
+      getOrCreate(prefix).isPrefix = true;
+      return this;
+    }
+
+    /**
+     * Adds a class name, which only matches itself.
+     * 
+     * @param name A fully-qualified class name.
+     * @return This builder.
+     */
+    public Builder addName(String name) {
+      getOrCreate(name).isName = true;
+      return this;
+    }
+
+    /**
+     * Creates an immutable matcher with the current prefixes and names.
+     * 
+     * @return The matcher.
+     */
+    public PackageMatcher build() {
+      return new PackageMatcher(root.freeze());
+    }
+
+    private MutableNode getOrCreate(String key) {
+      MutableNode node = root;
+      for (int i = 0; i < key.length(); ++i) {
+        MutableNode child = node.children.get(key.charAt(i));
+        if (child == null) {
+          child = new MutableNode();
+          node.children.put(key.charAt(i), child);
+        }
+        node = child;
+      }
+      return node;
+    }
+  }
+
+  private static class MutableNode {
+    private final Map<Character, MutableNode> children = new TreeMap<>();
+    private boolean isPrefix = false;
+    private boolean isName = false;
+
+    private Node freeze() {
+      if (children.isEmpty()) {
+        return new Node(NO_KEYS, NO_CHILDREN, isPrefix, isName);
+      }
+      char[] keys = new char[children.size()];
+      Node[] frozenChildren = new Node[children.size()];
+      int index = 0;
+      for (Map.Entry<Character, MutableNode> entry : children.entrySet()) {
+        keys[index] = entry.getKey();
+        frozenChildren[index] = entry.getValue().freeze();
+        ++index;
+      }
+      return new Node(keys, frozenChildren, isPrefix, isName);
+    }
+  }
+
+  /*
+   * The children of a node are kept in arrays sorted by character, which are searched with a binary
+   * search.
+   */
+  private static class Node {
+    private final char[] keys;
+    private final Node[] children;
+    private final boolean isPrefix;
+    private final boolean isName;
+
+    private Node(char[] keys, Node[] children, boolean isPrefix, boolean isName) {
+      this.keys = keys;
+      this.children = children;
+      this.isPrefix = isPrefix;
+      this.isName = isName;
+    }
+
+    private Node getChild(char c) {
+      int index = Arrays.binarySearch(keys, c);
+      return index < 0 ? null : children[index];
+    }
+  }
+}
@@ -18,24 +18,365 @@
  */
 package edu.psu.cse.siis.coal;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * An interning pool, which returns a canonical instance among equal elements. The pool only holds
+ * weak references to its elements, so that elements that are no longer used anywhere else can be
+ * garbage collected. The number of elements can also be bounded with
+ * {@link #setMaximumSize(int)}, beyond which new elements are returned without being pooled.
+ *
+ * <p>
+ * A pool is declared once per element type, but its elements and statistics are kept per
+ * {@link AnalysisContext}: concurrent analyses neither share canonical instances nor see each
+ * other's statistics. The static methods apply to the pools of the current context. Interning
+ * only saves memory (the elements are compared with equals), so the pools can be cleared at any
+ * time: {@link #clearAll()} is called at the end of each analysis, and {@link #expungeAll()} drops
+ * the collected elements between solver iterations. Hit, miss and eviction counts are kept for
+ * each pool and reported by {@link #recordMetrics(AnalysisMetrics)}.
+ * </p>
+ * 
+ * @param <T> The type of the elements.
+ */
 public class Pool<T> {
-  private final ConcurrentMap<T, T> pool = new ConcurrentHashMap<>();
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
 
-  public T intern(T element) {
-    T result = pool.putIfAbsent(element, element);
-    if (result == null) {
-      return element;
-    } else {
+  private final String name;
+  private final int index;
+
+  /*
+   * The pools of an analysis context, indexed by pool.
+   */
+  static final class Registry {
+    private volatile Store<?>[] stores = new Store<?>[0];
+    private volatile int maximumSize = Integer.MAX_VALUE;
+
+    @SuppressWarnings("unchecked")
+    <T> Store<T> get(Pool<T> pool) {
+      Store<?>[] current = stores;
+      if (pool.index < current.length && current[pool.index] != null) {
+        return (Store<T>) current[pool.index];
+      }
+      synchronized (this) {
+        current = stores;
+        if (pool.index < current.length && current[pool.index] != null) {
+          return (Store<T>) current[pool.index];
+        }
+        current = Arrays.copyOf(current, Math.max(current.length, POOL_COUNT.get()));
+        Store<T> store = new Store<>(this, pool.name);
+        current[pool.index] = store;
+        stores = current;
+        return store;
+      }
+    }
+
+    long totalSize() {
+      long result = 0;
+      for (Store<?> store : stores) {
+        if (store != null) {
+          result += store.pool.size();
+        }
+      }
       return result;
     }
+
+    void expungeAll() {
+      for (Store<?> store : stores) {
+        if (store != null) {
+          store.expunge();
+        }
+      }
+    }
+
+    void clearAll() {
+      for (Store<?> store : stores) {
+        if (store != null) {
+          store.clear();
+        }
+      }
+    }
+
+    void recordMetrics(AnalysisMetrics metrics) {
+      for (Store<?> store : stores) {
+        if (store != null) {
+          store.recordStatistics(metrics);
+        }
+      }
+    }
+  }
+
+  /*
+   * The elements and statistics of a pool in one analysis context.
+   */
+  private static final class Store<T> {
+    private final Registry registry;
+    private final String name;
+    private final ConcurrentMap<Object, WeakEntry<T>> pool = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    Store(Registry registry, String name) {
+      this.registry = registry;
+      this.name = name;
+    }
+
+    T intern(T element) {
+      expunge();
+
+      // Most lookups hit: a plain get does not lock, unlike putIfAbsent.
+      LookupKey key = new LookupKey(element);
+      WeakEntry<T> entry = pool.get(key);
+      T result = entry == null ? null : entry.get();
+      if (result != null) {
+        hits.incrementAndGet();
+        return result;
+      }
+
+      if (pool.size() >= registry.maximumSize) {
+        overflows.incrementAndGet();
+        return element;
+      }
+
+      WeakEntry<T> newEntry = new WeakEntry<>(element, key.hashCode, queue);
+      while (true) {
+        entry = pool.putIfAbsent(newEntry, newEntry);
+        if (entry == null) {
+          misses.incrementAndGet();
+          return element;
+        }
+        result = entry.get();
+        if (result != null) {
+          hits.incrementAndGet();
+          return result;
+        }
+        // The equal element was collected after the comparison.
+        pool.remove(entry, entry);
+      }
+    }
+
+    void expunge() {
+      Reference<? extends T> reference;
+      while ((reference = queue.poll()) != null) {
+        if (pool.remove(reference, reference)) {
+          evictions.incrementAndGet();
+        }
+      }
+    }
+
+    void clear() {
+      pool.clear();
+      while (queue.poll() != null) {
+      }
+      hits.set(0);
+      misses.set(0);
+      evictions.set(0);
+      overflows.set(0);
+    }
+
+    void recordStatistics(AnalysisMetrics metrics) {
+      String prefix = "pool." + name + ".";
+      metrics.setCounter(prefix + "hits", hits.get());
+      metrics.setCounter(prefix + "misses", misses.get());
+      metrics.setCounter(prefix + "evictions", evictions.get());
+      metrics.setCounter(prefix + "overflows", overflows.get());
+      metrics.setCounter(prefix + "size", pool.size());
+    }
+
+    @Override
+    public String toString() {
+      return "Pool " + name + ": " + pool.size() + " elements, " + hits.get() + " hits, "
+          + misses.get() + " misses, " + evictions.get() + " evictions, " + overflows.get()
+          + " overflows";
+    }
+  }
+
+  /*
+   * A pooled element. Two entries are equal if their elements are equal, or if they are the same
+   * entry (after their element has been collected).
+   */
+  private static final class WeakEntry<T> extends WeakReference<T> {
+    private final int hashCode;
+
+    WeakEntry(T element, int hashCode, ReferenceQueue<T> queue) {
+      super(element, queue);
+      this.hashCode = hashCode;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof WeakEntry)) {
+        return false;
+      }
+      Object element = get();
+      return element != null && element.equals(((WeakEntry<?>) other).get());
+    }
+  }
+
+  /*
+   * The key used to look up an element without creating a weak reference.
+   */
+  private static final class LookupKey {
+    private final Object element;
+    private final int hashCode;
+
+    LookupKey(Object element) {
+      this.element = element;
+      this.hashCode = element.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof WeakEntry && element.equals(((WeakEntry<?>) other).get());
+    }
   }
 
+  /**
+   * Creates a pool. Its elements are kept in the analysis context where they are interned.
+   * 
+   * @param name The name of the pool in the metrics (e.g., the simple name of the element type).
+   */
+  public Pool(String name) {
+    this.name = name;
+    this.index = POOL_COUNT.getAndIncrement();
+  }
+
+  /*
+   * Returns the elements of this pool in the current analysis context.
+   */
+  private Store<T> store() {
+    return AnalysisContext.current().pools.get(this);
+  }
+
+  /**
+   * Returns the canonical instance of an element, which is the element itself if no equal element
+   * is pooled in the current analysis context.
+   * 
+   * @param element An element.
+   * @return The canonical instance of the element.
+   */
+  public T intern(T element) {
+    return store().intern(element);
+  }
+
+  /**
+   * Returns a copy of the elements that are currently pooled. This is meant for debugging.
+   * 
+   * @return The pooled elements.
+   */
   public Set<T> getValues() {
-    return new HashSet<T>(pool.values());
+    Set<T> result = new HashSet<T>();
+    for (WeakEntry<T> entry : store().pool.values()) {
+      T element = entry.get();
+      if (element != null) {
+        result.add(element);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of pooled elements, including the ones collected since the last expunge.
+   * 
+   * @return The pool size.
+   */
+  public int size() {
+    return store().pool.size();
+  }
+
+  /**
+   * Removes the entries of the elements that have been garbage collected.
+   */
+  public void expunge() {
+    store().expunge();
+  }
+
+  /**
+   * Removes all elements and resets the statistics.
+   */
+  public void clear() {
+    store().clear();
+  }
+
+  /**
+   * Records the statistics of this pool as counters named pool.&lt;name&gt;.&lt;statistic&gt;.
+   * 
+   * @param metrics The metrics of the analysis.
+   */
+  public void recordStatistics(AnalysisMetrics metrics) {
+    store().recordStatistics(metrics);
+  }
+
+  @Override
+  public String toString() {
+    return store().toString();
+  }
+
+  /**
+   * Sets the maximum number of elements of each pool of the current analysis context. This does
+   * not remove pooled elements.
+   * 
+   * @param maximumSize The maximum number of elements.
+   */
+  public static void setMaximumSize(int maximumSize) {
+    AnalysisContext.current().pools.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the total number of pooled elements in the pools of the current analysis context.
+   * 
+   * @return The total size of the pools.
+   */
+  public static long totalSize() {
+    return AnalysisContext.current().pools.totalSize();
+  }
+
+  /**
+   * Removes the entries of the garbage collected elements from the pools of the current analysis
+   * context.
+   */
+  public static void expungeAll() {
+    AnalysisContext.current().pools.expungeAll();
+  }
+
+  /**
+   * Clears the pools of the current analysis context and their statistics. This should be called
+   * when an analysis is over.
+   */
+  public static void clearAll() {
+    AnalysisContext.current().pools.clearAll();
+  }
+
+  /**
+   * Records the statistics of the pools of the current analysis context.
+   * 
+   * @param metrics The metrics of the analysis.
+   */
+  public static void recordMetrics(AnalysisMetrics metrics) {
+    AnalysisContext.current().pools.recordMetrics(metrics);
   }
 }
@@ -1,175 +1,305 @@
-/*
- * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
- * Systems and Internet Infrastructure Security Laboratory
- *
- * Author: Damien Octeau
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package edu.psu.cse.siis.coal;
-
-import edu.psu.cse.siis.coal.transformers.AllTopEdgeFunction;
-import edu.psu.cse.siis.coal.values.BasePropagationValue;
-import heros.*;
-import heros.edgefunc.EdgeIdentity;
-import heros.template.DefaultIDETabulationProblem;
-import soot.*;
-import soot.jimple.infoflow.solver.cfg.InfoflowCFG;
-import soot.jimple.internal.JimpleLocal;
-
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-/**
- * Definition of the IDE problem for MVMF constant propagation.
- */
-public class PropagationProblem
-    extends
-    DefaultIDETabulationProblem<Unit, Value, SootMethod, BasePropagationValue, InfoflowCFG> {
-  public static final EdgeFunction<BasePropagationValue> ALL_TOP = new AllTopEdgeFunction();
-
-  private final Set<Unit> initialSeeds = new HashSet<Unit>();
-  private final PointsToAnalysis pointsToAnalysis = Scene.v().getPointsToAnalysis();
-  private InfoflowCFG icfg;
-
-  /*
-   * Edge and flow function factories.
-   */
-  private NormalEdgeFunctionFactory normalEdgeFunctionFactory = new NormalEdgeFunctionFactory();
-  private NormalFlowFunctionFactory normalFlowFunctionFactory = new NormalFlowFunctionFactory();
-  private CallFlowFunctionFactory callFlowFunctionFactory = new CallFlowFunctionFactory();
-  private CallToReturnEdgeFunctionFactory callToReturnEdgeFunctionFactory =
-      new CallToReturnEdgeFunctionFactory();
-  private CallToReturnFlowFunctionFactory callToReturnFlowFunctionFactory =
-      new CallToReturnFlowFunctionFactory();
-  private ReturnFlowFunctionFactory returnFlowFunctionFactory = new ReturnFlowFunctionFactory();
-
-  public PropagationProblem(InfoflowCFG icfg) {
-    super(icfg);
-    this.icfg = icfg;
-  }
-
-  public Set<Unit> getInitialSeeds() {
-    return initialSeeds;
-  }
-
-  @Override
-  protected MeetLattice<BasePropagationValue> createMeetLattice() {
-    return new PropagationLattice();
-  }
-
-  /**
-   * Factory for edge functions.
-   * 
-   * @return The edge functions.
-   */
-  @Override
-  protected EdgeFunctions<Unit, Value, SootMethod, BasePropagationValue>
-      createEdgeFunctionsFactory() {
-    return new EdgeFunctions<Unit, Value, SootMethod, BasePropagationValue>() {
-
-      @Override
-      public EdgeFunction<BasePropagationValue> getNormalEdgeFunction(Unit curr, Value currNode,
-          Unit succ, Value succNode) {
-        return normalEdgeFunctionFactory.getNormalEdgeFunction(curr, currNode, succNode,
-            zeroValue(), pointsToAnalysis);
-      }
-
-      @Override
-      public EdgeFunction<BasePropagationValue> getCallEdgeFunction(Unit callStmt, Value srcNode,
-          SootMethod destinationMethod, Value destNode) {
-        // TODO (Damien): maybe activate again?
-        // InvokeExpr invokeExpr = ((Stmt) callStmt).getInvokeExpr();
-        //
-        // for (int i = 0; i < destinationMethod.getParameterCount(); ++i) {
-        // if (invokeExpr.getArg(i) instanceof NullConstant && srcNode.equals(zeroValue())
-        // && destNode.equals(destinationMethod.getActiveBody().getParameterLocal(i))) {
-        // PropagationTransformer propagationTransformer = new PropagationTransformer();
-        // propagationTransformer.addBranchTransformer(NullBranchTransformer.v());
-        // }
-        // }
-
-        return EdgeIdentity.v();
-      }
-
-      @Override
-      public EdgeFunction<BasePropagationValue> getReturnEdgeFunction(Unit callSite,
-          SootMethod calleeMethod, Unit exitStmt, Value exitNode, Unit returnSite, Value retNode) {
-        return EdgeIdentity.v();
-      }
-
-      @Override
-      public EdgeFunction<BasePropagationValue> getCallToReturnEdgeFunction(Unit callSite,
-          Value callNode, Unit returnSite, Value returnSideNode) {
-        return callToReturnEdgeFunctionFactory.getCallToReturnEdgeFunction(callSite, callNode,
-            returnSite, returnSideNode, pointsToAnalysis);
-      }
-    };
-  }
-
-  /**
-   * Factory for flow functions.
-   * 
-   * @return The flow functions.
-   */
-  @Override
-  protected FlowFunctions<Unit, Value, SootMethod> createFlowFunctionsFactory() {
-    return new FlowFunctions<Unit, Value, SootMethod>() {
-
-      @Override
-      public FlowFunction<Value> getNormalFlowFunction(Unit src, Unit dest) {
-        return normalFlowFunctionFactory.getNormalFlowFunction(src, dest, zeroValue(),
-            pointsToAnalysis);
-      }
-
-      @Override
-      public FlowFunction<Value> getCallFlowFunction(Unit src, final SootMethod dest) {
-        return callFlowFunctionFactory.getCallFlowFunction(src, dest, zeroValue());
-      }
-
-      @Override
-      public FlowFunction<Value> getReturnFlowFunction(Unit callSite, SootMethod callee,
-          Unit exitStmt, Unit retSite) {
-        return returnFlowFunctionFactory.getReturnFlowFunction(callSite, callee, exitStmt, retSite,
-            zeroValue());
-      }
-
-      @Override
-      public FlowFunction<Value> getCallToReturnFlowFunction(Unit call, Unit returnSite) {
-        return callToReturnFlowFunctionFactory.getCallToReturnFlowFunction(call, returnSite,
-            zeroValue(), icfg);
-      }
-    };
-  }
-
-  @Override
-  public Value createZeroValue() {
-    return new JimpleLocal("zero", NullType.v());
-  }
-
-  @Override
-  public Map<Unit, Set<Value>> initialSeeds() {
-    return DefaultSeeds.make(initialSeeds, zeroValue());
-  }
-
-  @Override
-  protected EdgeFunction<BasePropagationValue> createAllTopFunction() {
-    return ALL_TOP;
-  }
-
-  @Override
-  public int numThreads() {
-    return AnalysisParameters.v().getThreadCount();
-  }
-}
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal;
+
+import edu.psu.cse.siis.coal.transformers.AllTopEdgeFunction;
+import edu.psu.cse.siis.coal.values.BasePropagationValue;
+import heros.*;
+import heros.edgefunc.EdgeIdentity;
+import heros.solver.IDESolver;
+import heros.template.DefaultIDETabulationProblem;
+import soot.*;
+import soot.jimple.infoflow.solver.cfg.InfoflowCFG;
+import soot.jimple.internal.JimpleLocal;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Definition of the IDE problem for MVMF constant propagation.
+ */
+public class PropagationProblem
+    extends
+    DefaultIDETabulationProblem<Unit, Value, SootMethod, BasePropagationValue, InfoflowCFG> {
+  public static final EdgeFunction<BasePropagationValue> ALL_TOP = new AllTopEdgeFunction();
+
+  private final Set<Unit> initialSeeds = new HashSet<Unit>();
+  private final PointsToAnalysis pointsToAnalysis = Scene.v().getPointsToAnalysis();
+  private InfoflowCFG icfg;
+
+  /*
+   * Edge and flow function factories.
+   */
+  private NormalEdgeFunctionFactory normalEdgeFunctionFactory = new NormalEdgeFunctionFactory();
+  private NormalFlowFunctionFactory normalFlowFunctionFactory = new NormalFlowFunctionFactory();
+  private CallFlowFunctionFactory callFlowFunctionFactory = new CallFlowFunctionFactory();
+  private CallToReturnEdgeFunctionFactory callToReturnEdgeFunctionFactory =
+      new CallToReturnEdgeFunctionFactory();
+  private CallToReturnFlowFunctionFactory callToReturnFlowFunctionFactory =
+      new CallToReturnFlowFunctionFactory();
+  private ReturnFlowFunctionFactory returnFlowFunctionFactory = new ReturnFlowFunctionFactory();
+
+  /*
+   * The problem outlives the solvers of the successive iterations. Flow functions and the edge
+   * functions that do not refer to another COAL value are the same in every iteration, so they are
+   * kept here instead of being rebuilt by each new solver.
+   */
+  private final ConcurrentMap<EdgeKey, EdgeFunction<BasePropagationValue>> stableEdgeFunctions =
+      new ConcurrentHashMap<>();
+  private final AtomicLong reusedEdgeFunctions = new AtomicLong();
+  private final AtomicLong builtEdgeFunctions = new AtomicLong();
+
+  private static final class EdgeKey {
+    private final Unit stmt;
+    private final Value node;
+    private final Unit succ;
+    private final Value succNode;
+
+    EdgeKey(Unit stmt, Value node, Unit succ, Value succNode) {
+      this.stmt = stmt;
+      this.node = node;
+      this.succ = succ;
+      this.succNode = succNode;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(stmt, node, succ, succNode);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof EdgeKey)) {
+        return false;
+      }
+      EdgeKey edgeKey = (EdgeKey) other;
+      return stmt == edgeKey.stmt && succ == edgeKey.succ && Objects.equals(node, edgeKey.node)
+          && Objects.equals(succNode, edgeKey.succNode);
+    }
+  }
+
+  public PropagationProblem(InfoflowCFG icfg) {
+    super(icfg);
+    this.icfg = icfg;
+  }
+
+  public Set<Unit> getInitialSeeds() {
+    return initialSeeds;
+  }
+
+  @Override
+  protected MeetLattice<BasePropagationValue> createMeetLattice() {
+    return new PropagationLattice();
+  }
+
+  /**
+   * Factory for edge functions.
+   * 
+   * @return The edge functions.
+   */
+  @Override
+  protected EdgeFunctions<Unit, Value, SootMethod, BasePropagationValue>
+      createEdgeFunctionsFactory() {
+    return new EdgeFunctions<Unit, Value, SootMethod, BasePropagationValue>() {
+
+      @Override
+      public EdgeFunction<BasePropagationValue> getNormalEdgeFunction(Unit curr, Value currNode,
+          Unit succ, Value succNode) {
+        EdgeKey edgeKey = new EdgeKey(curr, currNode, null, succNode);
+        EdgeFunction<BasePropagationValue> result = getStableEdgeFunction(edgeKey);
+        if (result != null) {
+          return result;
+        }
+
+        IterationSolver.v().startReferenceTracking();
+        result =
+            normalEdgeFunctionFactory.getNormalEdgeFunction(curr, currNode, succNode,
+                zeroValue(), pointsToAnalysis);
+        return putEdgeFunction(edgeKey, result);
+      }
+
+      @Override
+      public EdgeFunction<BasePropagationValue> getCallEdgeFunction(Unit callStmt, Value srcNode,
+          SootMethod destinationMethod, Value destNode) {
+        // TODO (Damien): maybe activate again?
+        // InvokeExpr invokeExpr = ((Stmt) callStmt).getInvokeExpr();
+        //
+        // for (int i = 0; i < destinationMethod.getParameterCount(); ++i) {
+        // if (invokeExpr.getArg(i) instanceof NullConstant && srcNode.equals(zeroValue())
+        // && destNode.equals(destinationMethod.getActiveBody().getParameterLocal(i))) {
+        // PropagationTransformer propagationTransformer = new PropagationTransformer();
+        // propagationTransformer.addBranchTransformer(NullBranchTransformer.v());
+        // }
+        // }
+
+        return EdgeIdentity.v();
+      }
+
+      @Override
+      public EdgeFunction<BasePropagationValue> getReturnEdgeFunction(Unit callSite,
+          SootMethod calleeMethod, Unit exitStmt, Value exitNode, Unit returnSite, Value retNode) {
+        return EdgeIdentity.v();
+      }
+
+      @Override
+      public EdgeFunction<BasePropagationValue> getCallToReturnEdgeFunction(Unit callSite,
+          Value callNode, Unit returnSite, Value returnSideNode) {
+        EdgeKey edgeKey = new EdgeKey(callSite, callNode, returnSite, returnSideNode);
+        EdgeFunction<BasePropagationValue> result = getStableEdgeFunction(edgeKey);
+        if (result != null) {
+          return result;
+        }
+
+        IterationSolver.v().startReferenceTracking();
+        result =
+            callToReturnEdgeFunctionFactory.getCallToReturnEdgeFunction(callSite, callNode,
+                returnSite, returnSideNode, pointsToAnalysis);
+        return putEdgeFunction(edgeKey, result);
+      }
+    };
+  }
+
+  /**
+   * Factory for flow functions.
+   * 
+   * @return The flow functions.
+   */
+  @Override
+  protected FlowFunctions<Unit, Value, SootMethod> createFlowFunctionsFactory() {
+    FlowFunctions<Unit, Value, SootMethod> flowFunctions = makeFlowFunctions();
+    if (AnalysisParameters.v().isIncremental()) {
+      return new FlowFunctionCache<>(flowFunctions, IDESolver.DEFAULT_CACHE_BUILDER);
+    } else {
+      return flowFunctions;
+    }
+  }
+
+  private FlowFunctions<Unit, Value, SootMethod> makeFlowFunctions() {
+    return new FlowFunctions<Unit, Value, SootMethod>() {
+
+      @Override
+      public FlowFunction<Value> getNormalFlowFunction(Unit src, Unit dest) {
+        return normalFlowFunctionFactory.getNormalFlowFunction(src, dest, zeroValue(),
+            pointsToAnalysis);
+      }
+
+      @Override
+      public FlowFunction<Value> getCallFlowFunction(Unit src, final SootMethod dest) {
+        return callFlowFunctionFactory.getCallFlowFunction(src, dest, zeroValue());
+      }
+
+      @Override
+      public FlowFunction<Value> getReturnFlowFunction(Unit callSite, SootMethod callee,
+          Unit exitStmt, Unit retSite) {
+        return returnFlowFunctionFactory.getReturnFlowFunction(callSite, callee, exitStmt, retSite,
+            zeroValue());
+      }
+
+      @Override
+      public FlowFunction<Value> getCallToReturnFlowFunction(Unit call, Unit returnSite) {
+        return callToReturnFlowFunctionFactory.getCallToReturnFlowFunction(call, returnSite,
+            zeroValue(), icfg);
+      }
+    };
+  }
+
+  /**
+   * Returns an edge function built during a previous iteration, if it does not depend on the
+   * iteration.
+   * 
+   * @param edgeKey The edge.
+   * @return The edge function, or null if it should be (re)built.
+   */
+  private EdgeFunction<BasePropagationValue> getStableEdgeFunction(EdgeKey edgeKey) {
+    if (!AnalysisParameters.v().isIncremental()) {
+      return null;
+    }
+    EdgeFunction<BasePropagationValue> result = stableEdgeFunctions.get(edgeKey);
+    if (result != null) {
+      reusedEdgeFunctions.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Records an edge function that has just been built, unless it refers to another COAL value. Such
+   * edge functions may change once the referenced value is known, so they are rebuilt by every
+   * iteration.
+   * 
+   * @param edgeKey The edge.
+   * @param edgeFunction The edge function built for the edge.
+   * @return The edge function.
+   */
+  private EdgeFunction<BasePropagationValue> putEdgeFunction(EdgeKey edgeKey,
+      EdgeFunction<BasePropagationValue> edgeFunction) {
+    builtEdgeFunctions.incrementAndGet();
+    if (!IterationSolver.v().stopReferenceTracking() && AnalysisParameters.v().isIncremental()) {
+      EdgeFunction<BasePropagationValue> previous =
+          stableEdgeFunctions.putIfAbsent(edgeKey, edgeFunction);
+      if (previous != null) {
+        return previous;
+      }
+    }
+    return edgeFunction;
+  }
+
+  /**
+   * Returns the number of edge functions that were reused from a previous iteration, and resets the
+   * count.
+   * 
+   * @return The number of reused edge functions.
+   */
+  public long takeReusedEdgeFunctionCount() {
+    return reusedEdgeFunctions.getAndSet(0);
+  }
+
+  /**
+   * Returns the number of edge functions that were built, and resets the count.
+   * 
+   * @return The number of built edge functions.
+   */
+  public long takeBuiltEdgeFunctionCount() {
+    return builtEdgeFunctions.getAndSet(0);
+  }
+
+  @Override
+  public Value createZeroValue() {
+    return new JimpleLocal("zero", NullType.v());
+  }
+
+  @Override
+  public Map<Unit, Set<Value>> initialSeeds() {
+    return DefaultSeeds.make(initialSeeds, zeroValue());
+  }
+
+  @Override
+  protected EdgeFunction<BasePropagationValue> createAllTopFunction() {
+    return ALL_TOP;
+  }
+
+  @Override
+  public int numThreads() {
+    return AnalysisParameters.v().getThreadCount();
+  }
+}
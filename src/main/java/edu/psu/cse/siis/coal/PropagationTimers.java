@@ -24,19 +24,15 @@ import soot.Timer;
  * Timers and counters for the execution of the COAL solver.
  */
 public class PropagationTimers {
-  private static PropagationTimers instance = new PropagationTimers();
-
-  private PropagationTimers() {
+  PropagationTimers() {
   }
 
   public static PropagationTimers v() {
-    synchronized (instance) {
-      return instance;
-    }
+    return AnalysisContext.current().propagationTimers;
   }
 
   public static void clear() {
-    instance = new PropagationTimers();
+    AnalysisContext.current().propagationTimers = new PropagationTimers();
   }
 
   public Timer modelParsing = new Timer("modelParsing");
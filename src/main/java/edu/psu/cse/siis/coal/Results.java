@@ -18,18 +18,18 @@
  */
 package edu.psu.cse.siis.coal;
 
-import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Access to the results of the current analysis context.
+ */
 public class Results {
-  private static List<Result> results = new ArrayList<>();
-
   public static void addResult(Result result) {
-    results.add(result);
+    AnalysisContext.current().results.add(result);
   }
 
   public static List<Result> getResults() {
-    return results;
+    return AnalysisContext.current().results;
   }
 
 }
@@ -191,8 +191,7 @@ class AliasAdjuster extends BodyTransformer {
               // if (flag) {
               // System.out.println("Inserting " + newInvoke);
               // }
-              units.insertAfter(newInvoke, s);
-              units.remove(s);
+              ldu.replaceUnit(s, newInvoke);
               last_changed = true;
             }
           } else {
@@ -166,6 +166,15 @@ public class Argument implements Serializable {
     return type;
   }
 
+  /**
+   * Returns the field to which the argument refers.
+   * 
+   * @return The field, or null if the argument does not refer to a field.
+   */
+  public Field getField() {
+    return field;
+  }
+
   /**
    * Returns the nominal field type for the field modified by this argument. This is the type
    * declared for the field. The argument value analysis used to determine the argument is the one
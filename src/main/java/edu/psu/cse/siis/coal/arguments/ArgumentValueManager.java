@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -34,26 +35,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import soot.Unit;
+import edu.psu.cse.siis.coal.AnalysisContext;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformer;
 import edu.psu.cse.siis.coal.field.transformers.FieldTransformerManager;
 
 /**
- * A singleton manager for method argument values, which trigger argument value analyses.
+ * A manager for method argument values, which trigger argument value analyses. There is one manager
+ * per analysis context.
  */
 public class ArgumentValueManager {
   private static final short MAX_TIME = 300;
   private static final short MIN_TIME = 120;
   private static final float DECREASE_FACTOR = 0.90f;
 
-  private static final ArgumentValueManager instance = new ArgumentValueManager();
-
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private final Map<String, ArgumentValueAnalysis> argumentValueAnalysisMap = new HashMap<>();
-  private final Map<ArgumentValueIdentifier, Set<Object>> cachedValues = new HashMap<>();
-  private final Map<String, FieldTransformer> topFieldTransformerMap = new HashMap<>();
+  // Queried concurrently by the edge function threads of the IDE solver.
+  private final Map<ArgumentValueIdentifier, Set<Object>> cachedValues =
+      new ConcurrentHashMap<>();
+  private final Map<String, FieldTransformer> topFieldTransformerMap = new ConcurrentHashMap<>();
 
   private short timeBudget = MAX_TIME;
 
@@ -61,7 +64,8 @@ public class ArgumentValueManager {
   }
 
   public static ArgumentValueManager v() {
-    return instance;
+    return AnalysisContext.current().getAttribute(ArgumentValueManager.class,
+        ArgumentValueManager::new);
   }
 
   /**
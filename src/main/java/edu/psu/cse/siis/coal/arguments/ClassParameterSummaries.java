@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import soot.SootMethod;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import edu.psu.cse.siis.coal.AnalysisContext;
+
+/**
+ * A bounded cache of the class values that the parameters of methods can take, as computed by the
+ * {@link ClassValueAnalysis} from the arguments at all the call sites of the method. A helper
+ * method that takes a class is resolved once, and not again for each call site below it.
+ * There is one cache per analysis context.
+ *
+ * <p>
+ * Summaries are computed depth first through the callers. A summary that is already being computed
+ * higher in the same query (a cycle in the call graph) contributes no values, and no query computes
+ * more than {@link #getDepthBudget()} nested summaries (cached ones do not count). A summary whose
+ * value depended on either is not cached, since it is only valid for that query. The budget is set
+ * with the {@code -summarydepth} command line option.
+ * </p>
+ */
+public class ClassParameterSummaries {
+  /**
+   * The default maximum number of summaries that are kept.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+  /**
+   * The default maximum number of nested summaries that a query computes.
+   */
+  public static final int DEFAULT_DEPTH_BUDGET = 16;
+
+  private volatile Cache<Key, Set<Object>> cache;
+  private volatile int depthBudget = DEFAULT_DEPTH_BUDGET;
+
+  private static final class Key {
+    private final SootMethod method;
+    private final int index;
+
+    Key(SootMethod method, int index) {
+      this.method = method;
+      this.index = index;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * method.hashCode() + index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key otherKey = (Key) other;
+      return method == otherKey.method && index == otherKey.index;
+    }
+  }
+
+  /**
+   * The summaries being computed by one query, from the outermost one.
+   */
+  static final class Query {
+    private final Map<Key, Integer> positions = new HashMap<>();
+    /*
+     * The lowest position of a summary in progress that the current summary depended on, and
+     * whether the current summary was cut by the depth budget.
+     */
+    private int lowestDependency = Integer.MAX_VALUE;
+    private boolean truncated = false;
+  }
+
+  /**
+   * Computes the summary of a parameter from the call sites of its method.
+   */
+  interface SummaryComputer {
+    Set<Object> compute(SootMethod method, int index, Query query);
+  }
+
+  private ClassParameterSummaries() {
+    setMaximumSize(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Returns the summaries of the current analysis context.
+   *
+   * @return The summaries of the current analysis context.
+   */
+  public static ClassParameterSummaries v() {
+    return AnalysisContext.current().getAttribute(ClassParameterSummaries.class,
+        ClassParameterSummaries::new);
+  }
+
+  /**
+   * Sets the maximum number of summaries that are kept. This clears the cache.
+   *
+   * @param maximumSize The maximum number of summaries.
+   */
+  public void setMaximumSize(int maximumSize) {
+    cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Sets the maximum number of nested summaries that a query computes. Beyond that, a parameter may
+   * take any class.
+   *
+   * @param depthBudget The maximum number of nested summaries.
+   */
+  public void setDepthBudget(int depthBudget) {
+    this.depthBudget = depthBudget;
+  }
+
+  /**
+   * Returns the maximum number of nested summaries that a query computes.
+   *
+   * @return The depth budget.
+   */
+  public int getDepthBudget() {
+    return depthBudget;
+  }
+
+  /**
+   * Returns the summary of a parameter, computing it if needed.
+   *
+   * @param method A method.
+   * @param index The index of a parameter of the method.
+   * @param query The query that needs the summary.
+   * @param computer Computes the summary when it is not cached.
+   * @param topValue The value of a parameter that may take any class.
+   * @return The class values of the parameter, empty if the summary is being computed by the query.
+   */
+  Set<Object> getSummary(SootMethod method, int index, Query query, SummaryComputer computer,
+      Set<Object> topValue) {
+    Key key = new Key(method, index);
+    Set<Object> summary = cache.getIfPresent(key);
+    if (summary != null) {
+      return summary;
+    }
+
+    Integer inProgress = query.positions.get(key);
+    if (inProgress != null) {
+      query.lowestDependency = Math.min(query.lowestDependency, inProgress);
+      return Collections.emptySet();
+    }
+    if (query.positions.size() >= depthBudget) {
+      query.truncated = true;
+      return topValue;
+    }
+
+    int position = query.positions.size();
+    int outerDependency = query.lowestDependency;
+    boolean outerTruncated = query.truncated;
+    query.positions.put(key, position);
+    query.lowestDependency = Integer.MAX_VALUE;
+    query.truncated = false;
+    try {
+      summary = Collections.unmodifiableSet(computer.compute(method, index, query));
+    } finally {
+      query.positions.remove(key);
+    }
+
+    // Dependencies on this summary or on the ones it called are resolved now.
+    boolean complete = !query.truncated && query.lowestDependency >= position;
+    if (complete) {
+      cache.put(key, summary);
+    }
+    if (query.lowestDependency >= position) {
+      query.lowestDependency = outerDependency;
+    } else {
+      query.lowestDependency = Math.min(outerDependency, query.lowestDependency);
+    }
+    query.truncated |= outerTruncated;
+    return summary;
+  }
+
+  /**
+   * Removes all summaries. This should be called when a new application is analyzed.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the number of summaries that were found in the cache.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Returns the number of summaries that were not found in the cache.
+   *
+   * @return The miss count.
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = cache.stats();
+    return "Class parameter summaries: " + cache.size() + " summaries, " + stats.hitCount()
+        + " hits, " + stats.missCount() + " misses, " + stats.evictionCount() + " evictions";
+  }
+}
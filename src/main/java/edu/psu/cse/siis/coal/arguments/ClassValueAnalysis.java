@@ -42,7 +42,6 @@ import soot.jimple.Stmt;
 import soot.jimple.StringConstant;
 import soot.jimple.VirtualInvokeExpr;
 import soot.jimple.toolkits.callgraph.Edge;
-import soot.toolkits.scalar.Pair;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
 
@@ -68,26 +67,59 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
    */
   @Override
   public Set<Object> computeVariableValues(Value value, Stmt start) {
+    return computeVariableValues(value, start, new ClassParameterSummaries.Query());
+  }
+
+  private Set<Object> computeVariableValues(Value value, Stmt start,
+      ClassParameterSummaries.Query query) {
     if (value instanceof ClassConstant) {
       return Collections.singleton((Object) ((ClassConstant) value).getValue());
     } else if (value instanceof Local) {
-      return processClassAssignments(
-          findAssignmentsForLocal(start, (Local) value, true, new HashSet<Pair<Unit, Local>>()),
-          new HashSet<Stmt>());
+      return processClassAssignments(findAssignmentsForLocal(start, (Local) value),
+          new HashSet<Stmt>(), query);
     } else {
       return Collections.singleton((Object) TOP_VALUE);
     }
   }
 
+  /**
+   * Returns the set of possible values of a parameter of a method, from the arguments at all the
+   * call sites of the method. This computes the summary of the parameter for
+   * {@link ClassParameterSummaries}.
+   * 
+   * @param method The method.
+   * @param index The index of the parameter.
+   * @param query The query that needs the summary.
+   * @return The set of possible values for the parameter, which may be empty.
+   */
+  private Set<Object> computeParameterValues(SootMethod method, int index,
+      ClassParameterSummaries.Query query) {
+    Set<Object> result = new HashSet<>();
+    Iterator<Edge> edges = Scene.v().getCallGraph().edgesInto(method);
+    while (edges.hasNext()) {
+      Edge edge = edges.next();
+      InvokeExpr invokeExpr = edge.srcStmt().getInvokeExpr();
+      Set<Object> newResults =
+          computeVariableValues(invokeExpr.getArg(index), edge.srcStmt(), query);
+      if (newResults.contains(TOP_VALUE) || newResults.contains(Constants.ANY_STRING)) {
+        return Collections.singleton((Object) TOP_VALUE);
+      } else {
+        result.addAll(newResults);
+      }
+    }
+    return result;
+  }
+
   /**
    * Processes assignment to local variables that have a class type.
    * 
    * @param assignStmts A list of assignment statements to a given local variable.
    * @param visitedStmts The set of statements visited by the analysis.
+   * @param query The parameter summaries being computed.
    * @return The set of possible value given by the assignment statements.
    */
   private Set<Object> processClassAssignments(List<DefinitionStmt> assignStmts,
-      Set<Stmt> visitedStmts) {
+      Set<Stmt> visitedStmts, ClassParameterSummaries.Query query) {
     Set<Object> result = new HashSet<>(assignStmts.size());
 
     for (DefinitionStmt assignStmt : assignStmts) {
@@ -96,19 +128,14 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
         result.add(((ClassConstant) rhsValue).getValue().intern());
       } else if (rhsValue instanceof ParameterRef) {
         ParameterRef parameterRef = (ParameterRef) rhsValue;
-        Iterator<Edge> edges =
-            Scene.v().getCallGraph()
-                .edgesInto(AnalysisParameters.v().getIcfg().getMethodOf(assignStmt));
-        while (edges.hasNext()) {
-          Edge edge = edges.next();
-          InvokeExpr invokeExpr = edge.srcStmt().getInvokeExpr();
-          Set<Object> newResults =
-              computeVariableValues(invokeExpr.getArg(parameterRef.getIndex()), edge.srcStmt());
-          if (newResults.contains(TOP_VALUE) || newResults.contains(Constants.ANY_STRING)) {
-            return Collections.singleton((Object) TOP_VALUE);
-          } else {
-            result.addAll(newResults);
-          }
+        Set<Object> newResults =
+            ClassParameterSummaries.v().getSummary(
+                AnalysisParameters.v().getIcfg().getMethodOf(assignStmt), parameterRef.getIndex(),
+                query, this::computeParameterValues, Collections.singleton((Object) TOP_VALUE));
+        if (newResults.contains(TOP_VALUE) || newResults.contains(Constants.ANY_STRING)) {
+          return Collections.singleton((Object) TOP_VALUE);
+        } else {
+          result.addAll(newResults);
         }
       } else if (rhsValue instanceof InvokeExpr) {
         InvokeExpr invokeExpr = (InvokeExpr) rhsValue;
@@ -133,7 +160,7 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
           }
           return Collections.singleton((Object) virtualInvokeExpr.getBase().getType().toString());
         } else {
-          Set<Object> constantClasses = handleInvokeExpression(assignStmt, visitedStmts);
+          Set<Object> constantClasses = handleInvokeExpression(assignStmt, visitedStmts, query);
           if (constantClasses == null) {
             return Collections.singleton((Object) TOP_VALUE);
           } else {
@@ -159,6 +186,11 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
    * @return The set of possible values.
    */
   protected Set<Object> handleInvokeExpression(Stmt sourceStmt, Set<Stmt> visitedStmts) {
+    return handleInvokeExpression(sourceStmt, visitedStmts, new ClassParameterSummaries.Query());
+  }
+
+  private Set<Object> handleInvokeExpression(Stmt sourceStmt, Set<Stmt> visitedStmts,
+      ClassParameterSummaries.Query query) {
     if (visitedStmts.contains(sourceStmt)) {
       return Collections.emptySet();
     } else {
@@ -182,9 +214,9 @@ public class ClassValueAnalysis extends BackwardValueAnalysis {
               result.add(((ClassConstant) returnValue).value);
             } else if (returnValue instanceof Local) {
               List<DefinitionStmt> assignStmts =
-                  findAssignmentsForLocal(returnStmt, (Local) returnValue, true,
-                      new HashSet<Pair<Unit, Local>>());
-              Set<Object> classConstants = processClassAssignments(assignStmts, visitedStmts);
+                  findAssignmentsForLocal(returnStmt, (Local) returnValue);
+              Set<Object> classConstants =
+                  processClassAssignments(assignStmts, visitedStmts, query);
               if (classConstants == null || classConstants.contains(TOP_VALUE)
                   || classConstants.contains(Constants.ANY_STRING)) {
                 return null;
@@ -24,6 +24,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import soot.Body;
 import soot.G;
@@ -67,11 +70,16 @@ import soot.shimple.ShimpleBody;
 import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.scalar.SimpleLiveLocals;
 import soot.toolkits.scalar.SmartLocalDefs;
+import edu.psu.cse.siis.coal.AnalysisContext;
+import edu.psu.cse.siis.coal.AnalysisParameters;
+import edu.psu.cse.siis.coal.PackageMatcher;
 
 public class ConstraintCollector {
   CCVisitor cc_svis;// TBD: get rid of this
   private boolean done_methodCollection = false;
   ExceptionalUnitGraph graph;
+  private final Map<Local, Map<Stmt, LanguageConstraints.Box>> constraintsOfAt =
+      new HashMap<Local, Map<Stmt, LanguageConstraints.Box>>();
 
   public ConstraintCollector(ExceptionalUnitGraph exceptionalUnitGraph) {
     graph = exceptionalUnitGraph;
@@ -83,14 +91,24 @@ public class ConstraintCollector {
    * be reaching definitions of l to s. Otherwise an assertion will fail -> TBD should return null
    * This is NOT ssa, so if 'l' is both defined and used by stmt, the result will be for the used
    * value, before the definition. That is, if "s: l = use(l);" the result describes the 'l' inside
-   * 'use(l)';
+   * 'use(l)'; The result is memoized, since collectors are shared through MethodAnalysisCache.
    */
-  LanguageConstraints.Box getConstraintOfAt(Local l, Stmt stmt) {
-    if (!done_methodCollection && !done_globalCollection) {
-      handleMethod(graph.getBody().getMethod());
+  synchronized LanguageConstraints.Box getConstraintOfAt(Local l, Stmt stmt) {
+    if (!done_methodCollection && !state().done_globalCollection) {
+      handleMethodOnce(graph.getBody().getMethod());
       done_methodCollection = true;
     }
-    return cc_svis.mergeDefsOfAt(l, stmt);
+    Map<Stmt, LanguageConstraints.Box> constraintsOfLocal = constraintsOfAt.get(l);
+    if (constraintsOfLocal == null) {
+      constraintsOfLocal = new HashMap<Stmt, LanguageConstraints.Box>();
+      constraintsOfAt.put(l, constraintsOfLocal);
+    }
+    LanguageConstraints.Box result = constraintsOfLocal.get(stmt);
+    if (result == null) {
+      result = cc_svis.mergeDefsOfAt(l, stmt);
+      constraintsOfLocal.put(stmt, result);
+    }
+    return result;
   }
 
   LanguageConstraints.Box getConstraintOfValueAt(Value v, Stmt stmt) {
@@ -108,16 +126,49 @@ public class ConstraintCollector {
   }
 
   public static class CCModelInterface implements ModelInterface {
+    private static final PackageMatcher EXCLUDED_PACKAGES = new PackageMatcher.Builder()
+        .addPrefix("sun.").addPrefix("java.").addPrefix("com.").addPrefix("org.").build();
+
     @Override
     public boolean isExcludedClass(String class_name) {
       // System.out.println("DBG: class_name="+class_name);
       // return !class_name.startsWith("dummy");
-      return class_name.startsWith("sun.") || class_name.startsWith("java.")
-          || class_name.startsWith("com.") || class_name.startsWith("org.");
+      return EXCLUDED_PACKAGES.matches(class_name);
     }
   }
 
   // ////////////////////////////////////////////////////
+  /*
+   * The methods whose constraints were collected, per analysis context.
+   */
+  private static final class CollectionState {
+    final Set<SootMethod> handledMethods = ConcurrentHashMap.newKeySet();
+    volatile boolean done_globalCollection = false;
+    volatile boolean done_applicationCollection = false;
+  }
+
+  private static CollectionState state() {
+    return AnalysisContext.current().getAttribute(CollectionState.class, CollectionState::new);
+  }
+
+  /*
+   * handleMethod changes the method body (AliasAdjuster), so two IDE solver threads must never
+   * handle the same method at the same time. Each method is handled once, under a per-method lock;
+   * other methods can be handled concurrently. Returns true if the method was handled by this call.
+   */
+  static boolean handleMethodOnce(SootMethod method) {
+    Set<SootMethod> handledMethods = state().handledMethods;
+    if (handledMethods.contains(method))
+      return false;
+    synchronized (method) {
+      if (handledMethods.contains(method))
+        return false;
+      handleMethod(method);
+      handledMethods.add(method);
+      return true;
+    }
+  }
+
   static void handleMethod(SootMethod method) {
     // DBG.print("DBG: handle-method="+method);
     // System.out.println("DBG: handle-method="+method);
@@ -153,23 +204,76 @@ public class ConstraintCollector {
     }
   }
 
-  private static boolean done_globalCollection = false;
+  /*
+   * Collects the constraints of all reachable methods. The constraints of the other methods are
+   * then never collected.
+   */
+  static void globalCollection(final ModelInterface ccModel) {
+    CollectionState state = state();
+    if (state.done_globalCollection)
+      return;
+    state.done_globalCollection = true;
+    collectReachableMethods(ccModel);
+  }
 
-  static void globalCollection(ModelInterface ccModel) {
-    if (done_globalCollection)
+  /*
+   * Collects the constraints of the reachable methods that are not excluded by the model
+   * interface. Unlike globalCollection, the constraints of the excluded methods are still collected
+   * on demand, when a value is queried in one of them.
+   */
+  static void applicationCollection(final ModelInterface ccModel) {
+    CollectionState state = state();
+    if (state.done_globalCollection || state.done_applicationCollection)
       return;
-    done_globalCollection = true;
+    state.done_applicationCollection = true;
+    collectReachableMethods(ccModel);
+  }
+
+  /*
+   * Methods are independent (the shared Res2Constr store is thread-safe and handleMethodOnce locks
+   * each method), so they are handled in parallel in a fork-join pool sized with the analysis
+   * thread count.
+   */
+  private static void collectReachableMethods(final ModelInterface ccModel) {
     List<MethodOrMethodContext> eps =
         new ArrayList<MethodOrMethodContext>(Scene.v().getEntryPoints());
     ReachableMethods reachableMethods =
         new ReachableMethods(Scene.v().getCallGraph(), eps.iterator(), null);
     reachableMethods.update();
+    final List<SootMethod> methods = new ArrayList<SootMethod>();
     for (Iterator<MethodOrMethodContext> iter = reachableMethods.listener(); iter.hasNext();) {
       SootMethod method = iter.next().method();
       // System.out.println("DBG: considering-method="+method);
       // System.out.println("DBG: method-hasActiveBody="+method.hasActiveBody());
       if (method.hasActiveBody() && !ccModel.isExcludedClass(method.getDeclaringClass().getName()))
-        handleMethod(method);
+        methods.add(method);
+    }
+
+    int threadCount = Math.max(1, AnalysisParameters.v().getThreadCount());
+    if (threadCount == 1) {
+      for (SootMethod method : methods)
+        handleMethodOnce(method);
+      return;
+    }
+    // Pool threads may outlive this analysis, so the context is bound explicitly for each task.
+    final AnalysisContext context = AnalysisContext.current();
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    try {
+      pool.submit(() -> methods.parallelStream().forEach(method -> {
+        AnalysisContext previous = context.enter();
+        try {
+          handleMethodOnce(method);
+        } finally {
+          context.exit(previous);
+        }
+      })).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while collecting string constraints", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Could not collect string constraints", e.getCause());
+    } finally {
+      pool.shutdown();
     }
   }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.IdentityStmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+/**
+ * The definitions of the locals of a method body, indexed once from its unit graph and shared by
+ * all the backward value analyses (see {@link MethodAnalysisCache#getDefinitionIndex}). Answers to
+ * {@link #getDefinitions(Unit, Local)} are memoized, so repeated queries in the same method are
+ * lookups.
+ */
+class DefinitionIndex {
+  private final Map<Unit, Integer> unitNumbers;
+  private final Unit[] units;
+  private final int[][] predecessors;
+  /*
+   * The local defined by each unit, or null if the unit does not define a local.
+   */
+  private final Local[] definedLocals;
+  private final Map<Local, Map<Unit, List<DefinitionStmt>>> definitions =
+      new ConcurrentHashMap<>();
+
+  DefinitionIndex(ExceptionalUnitGraph graph) {
+    int size = graph.size();
+    unitNumbers = new IdentityHashMap<>(size);
+    units = new Unit[size];
+    definedLocals = new Local[size];
+    int number = 0;
+    for (Unit unit : graph) {
+      unitNumbers.put(unit, number);
+      units[number] = unit;
+      if (unit instanceof DefinitionStmt) {
+        Value leftOp = ((DefinitionStmt) unit).getLeftOp();
+        if (leftOp instanceof Local) {
+          definedLocals[number] = (Local) leftOp;
+        }
+      }
+      ++number;
+    }
+
+    predecessors = new int[size][];
+    for (int i = 0; i < size; ++i) {
+      List<Unit> preds = graph.getPredsOf(units[i]);
+      int[] predNumbers = new int[preds.size()];
+      for (int j = 0; j < predNumbers.length; ++j) {
+        predNumbers[j] = unitNumbers.get(preds.get(j));
+      }
+      predecessors[i] = predNumbers;
+    }
+  }
+
+  /**
+   * Returns the definitions of a local that reach a statement, starting with the statement itself.
+   * Copies from other locals are followed, so the result only contains identity statements and
+   * assignments of non-local values.
+   * 
+   * @param start The statement where the search starts.
+   * @param local The local whose definitions should be found.
+   * @return The definitions of the local, which should not be modified.
+   */
+  List<DefinitionStmt> getDefinitions(Unit start, Local local) {
+    Map<Unit, List<DefinitionStmt>> localDefinitions = definitions.get(local);
+    if (localDefinitions == null) {
+      localDefinitions = definitions.computeIfAbsent(local, k -> new ConcurrentHashMap<>());
+    }
+    List<DefinitionStmt> result = localDefinitions.get(start);
+    if (result == null) {
+      result = Collections.unmodifiableList(findDefinitions(start, local));
+      localDefinitions.put(start, result);
+    }
+    return result;
+  }
+
+  /*
+   * Walks the graph backward from start, along each path until a definition of the local. A copy
+   * from another local restarts the walk at the copy, for the other local. The units already
+   * visited are kept per local, so that each (unit, local) pair is visited at most once.
+   */
+  private List<DefinitionStmt> findDefinitions(Unit start, Local local) {
+    Integer startNumber = unitNumbers.get(start);
+    if (startNumber == null) {
+      throw new IllegalArgumentException("Unit " + start + " is not in the indexed body");
+    }
+    List<DefinitionStmt> result = new ArrayList<>();
+    Map<Local, BitSet> visited = new IdentityHashMap<>();
+
+    // Pending (unit, local) walks, the local of a walk is in the same position of its stack.
+    int[] unitStack = new int[16];
+    Local[] localStack = new Local[16];
+    int top = 0;
+    unitStack[top] = startNumber;
+    localStack[top++] = local;
+
+    while (top > 0) {
+      int current = unitStack[--top];
+      Local currentLocal = localStack[top];
+      localStack[top] = null;
+
+      BitSet visitedUnits = visited.get(currentLocal);
+      if (visitedUnits == null) {
+        visitedUnits = new BitSet(units.length);
+        visited.put(currentLocal, visitedUnits);
+      }
+      if (visitedUnits.get(current)) {
+        continue;
+      }
+      visitedUnits.set(current);
+
+      Unit unit = units[current];
+      if (definedLocals[current] == currentLocal) {
+        if (unit instanceof IdentityStmt) {
+          result.add((IdentityStmt) unit);
+        } else if (unit instanceof AssignStmt) {
+          Value rightOp = ((AssignStmt) unit).getRightOp();
+          if (rightOp instanceof Local) {
+            if (top == unitStack.length) {
+              unitStack = Arrays.copyOf(unitStack, top * 2);
+              localStack = Arrays.copyOf(localStack, top * 2);
+            }
+            unitStack[top] = current;
+            localStack[top++] = (Local) rightOp;
+          } else {
+            result.add((AssignStmt) unit);
+          }
+          // The assignment generates the local on that path.
+          // Anything before is irrelevant.
+          continue;
+        }
+      }
+
+      int[] preds = predecessors[current];
+      if (top + preds.length > unitStack.length) {
+        int capacity = Math.max(unitStack.length * 2, top + preds.length);
+        unitStack = Arrays.copyOf(unitStack, capacity);
+        localStack = Arrays.copyOf(localStack, capacity);
+      }
+      for (int pred : preds) {
+        unitStack[top] = pred;
+        localStack[top++] = currentLocal;
+      }
+    }
+
+    return result;
+  }
+}
@@ -26,7 +26,6 @@ import java.util.Set;
 
 import soot.Local;
 import soot.Scene;
-import soot.Unit;
 import soot.Value;
 import soot.jimple.DefinitionStmt;
 import soot.jimple.IntConstant;
@@ -35,7 +34,6 @@ import soot.jimple.LongConstant;
 import soot.jimple.ParameterRef;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.callgraph.Edge;
-import soot.toolkits.scalar.Pair;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
 
@@ -85,8 +83,7 @@ public class IntValueAnalysis extends BackwardValueAnalysis {
    * @return The set of possible values for the local variable.
    */
   private Set<Object> findIntAssignmentsForLocal(Stmt start, Local local, Set<Stmt> visitedStmts) {
-    List<DefinitionStmt> assignStmts =
-        findAssignmentsForLocal(start, local, true, new HashSet<Pair<Unit, Local>>());
+    List<DefinitionStmt> assignStmts = findAssignmentsForLocal(start, local);
     Set<Object> result = new HashSet<>(assignStmts.size());
 
     for (DefinitionStmt assignStmt : assignStmts) {
@@ -23,17 +23,33 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import soot.SootMethod;
 import soot.jimple.Stmt;
+import edu.psu.cse.siis.coal.AnalysisContext;
 import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
 
 public abstract class LanguageConstraints {
-  static int g_uid = 0;
+  static final AtomicInteger g_uid = new AtomicInteger();
   public final int uid;
 
+  /*
+   * Incremented whenever a constraint graph changes (a box is set or a published union grows), so
+   * that solved values can be reused only while the constraints they were computed from are
+   * unchanged. There is one generation per analysis context.
+   */
+  @SuppressWarnings("serial")
+  private static final class Generation extends AtomicInteger {
+  }
+
+  static AtomicInteger getGeneration() {
+    return AnalysisContext.current().getAttribute(Generation.class, Generation::new);
+  }
+
   public LanguageConstraints() {
-    uid = ++g_uid;
+    uid = g_uid.incrementAndGet();
   }
 
   @Override
@@ -146,14 +162,20 @@ public abstract class LanguageConstraints {
 
   /*************************************************************************/
   public static class Union extends LanguageConstraints {
+    // Unions of fields, returns and arguments may grow while other threads are solving them.
     public List<Box> elements;
+    // Set once the union is in a box. Until then, no solved value can depend on it.
+    private volatile boolean published = false;
 
     public Union() {
-      elements = new ArrayList<Box>();
+      elements = new CopyOnWriteArrayList<Box>();
     }
 
     void addLCB(Box elm) {
       elements.add(elm);
+      if (published) {
+        getGeneration().incrementAndGet();
+      }
     }
 
     List<Box> getElementBoxes() {
@@ -191,6 +213,7 @@ public abstract class LanguageConstraints {
 
     void setLCB(Box lcb0) {
       lcb = lcb0;
+      getGeneration().incrementAndGet();
     }
 
     Box getLCB() {
@@ -225,23 +248,32 @@ public abstract class LanguageConstraints {
   /*************************************************************************/
   /*************************************************************************/
   public static class Box {
-    static int g_uid = 0;
+    static final AtomicInteger g_uid = new AtomicInteger();
     int uid;
 
-    LanguageConstraints lc;
+    volatile LanguageConstraints lc;
 
     public Box() {
-      uid = ++g_uid;
+      uid = g_uid.incrementAndGet();
       lc = null;
     }
 
     public Box(LanguageConstraints lc0) {
-      uid = ++g_uid;
+      uid = g_uid.incrementAndGet();
       lc = lc0;
+      publish(lc0);
     }
 
     public void setLC(LanguageConstraints lc0) {
+      publish(lc0);
       lc = lc0;
+      getGeneration().incrementAndGet();
+    }
+
+    private static void publish(LanguageConstraints lc0) {
+      if (lc0 instanceof Union) {
+        ((Union) lc0).published = true;
+      }
     }
 
     public LanguageConstraints getLC() {
@@ -267,6 +299,7 @@ public abstract class LanguageConstraints {
     }
 
     public void apply(switchLC slc) {
+      LanguageConstraints lc = this.lc;
       if (lc != null)
         lc.apply(slc);
     }
@@ -290,6 +323,7 @@ public abstract class LanguageConstraints {
     @Override
     public void apply(switchLC slc) {
       boolean old_mode = slc.setFieldMode(true);
+      LanguageConstraints lc = this.lc;
       if (lc != null)
         lc.apply(slc);
       else {// HACK
@@ -303,11 +337,9 @@ public abstract class LanguageConstraints {
   }
 
   /*************************************************************************/
-  private static Box bottomBox = null;
+  private static final Box bottomBox = new Box(Bottom.v());
 
   public static Box BottomBox() {
-    if (bottomBox == null)
-      bottomBox = new Box(Bottom.v());
     return bottomBox;
   }
 
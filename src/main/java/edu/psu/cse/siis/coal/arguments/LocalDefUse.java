@@ -17,6 +17,10 @@
  */
 package edu.psu.cse.siis.coal.arguments;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,7 +29,6 @@ import java.util.Map;
 import java.util.Set;
 
 import soot.Body;
-import soot.G;
 import soot.Local;
 import soot.SootMethod;
 import soot.Unit;
@@ -34,12 +37,16 @@ import soot.ValueBox;
 import soot.jimple.AssignStmt;
 import soot.jimple.Jimple;
 import soot.jimple.Stmt;
-import soot.toolkits.graph.DominatorsFinder;
 import soot.toolkits.graph.ExceptionalUnitGraph;
-import soot.toolkits.graph.SimpleDominatorsFinder;
-import soot.toolkits.scalar.SimpleLiveLocals;
-import soot.toolkits.scalar.SmartLocalDefs;
 
+/**
+ * Local definitions and uses of a body that is being rewritten by the {@link AliasAdjuster}.
+ * 
+ * Reaching definitions are computed on demand, one local at a time, and cached. Renaming a local
+ * ({@link #replaceResultAndUses}) does not change the control flow, so it only invalidates the
+ * reaching definitions of the two locals involved. Replacing a unit ({@link #replaceUnit})
+ * invalidates the unit graph, which is rebuilt the next time reaching definitions are needed.
+ */
 public class LocalDefUse {
 
   private final Map<Local, Set<Unit>> l2def;
@@ -47,12 +54,16 @@ public class LocalDefUse {
   private SootMethod sm;
 
   Body body;
+  /*
+   * Null when units have been replaced since the graph was built.
+   */
   ExceptionalUnitGraph graph;
   /*
-   * Note that sld should be updated after each statement modification. Same for graph
+   * For each local for which they have been computed, the definitions of the local that reach each
+   * unit (before the unit). Entries must be removed when the definitions of the local change.
    */
-  SmartLocalDefs sld;
-  DominatorsFinder dFinder;
+  private final Map<Local, Map<Unit, Set<Unit>>> reachingDefs =
+      new HashMap<Local, Map<Unit, Set<Unit>>>();
   LocalDefUse ldu;
 
   void add(Map<Local, Set<Unit>> l2x, Local l, Unit stmt) {
@@ -118,8 +129,6 @@ public class LocalDefUse {
       body.getUnits().addFirst(Jimple.v().newNopStmt());
       graph = new ExceptionalUnitGraph(body);
     }
-    sld = new SmartLocalDefs(graph, new SimpleLiveLocals(graph));
-    dFinder = new SimpleDominatorsFinder(graph);
 
     Iterator<Unit> unitIt = this.body.getUnits().snapshotIterator();
 
@@ -137,6 +146,61 @@ public class LocalDefUse {
     return l2use.get(l);
   }
 
+  /**
+   * Returns the definitions of a local that reach a unit, before the unit is executed.
+   * 
+   * @param l A local.
+   * @param stmt A unit of the body.
+   * @return The definitions of l that reach stmt.
+   */
+  Set<Unit> getDefsOfAt(Local l, Unit stmt) {
+    Map<Unit, Set<Unit>> defsAt = reachingDefs.get(l);
+    if (defsAt == null) {
+      defsAt = computeReachingDefs(l);
+      reachingDefs.put(l, defsAt);
+    }
+    Set<Unit> result = defsAt.get(stmt);
+    return result == null ? Collections.<Unit>emptySet() : result;
+  }
+
+  /*
+   * Forward propagation of the definitions of a single local, from the definitions to the units
+   * they reach. A definition kills the other definitions of the local. As in SmartLocalDefs, the
+   * definitions after a unit also flow along its exceptional edges.
+   */
+  private Map<Unit, Set<Unit>> computeReachingDefs(Local l) {
+    if (graph == null) {
+      graph = new ExceptionalUnitGraph(body);
+    }
+    Map<Unit, Set<Unit>> defsAt = new HashMap<Unit, Set<Unit>>();
+    Set<Unit> defs = getDefs(l);
+    if (defs == null || defs.isEmpty()) {
+      return defsAt;
+    }
+
+    Deque<Unit> worklist = new ArrayDeque<Unit>(defs);
+    while (!worklist.isEmpty()) {
+      Unit unit = worklist.poll();
+      Set<Unit> out;
+      if (defs.contains(unit)) {
+        out = Collections.singleton(unit);
+      } else {
+        out = defsAt.get(unit);
+      }
+      for (Unit succ : graph.getSuccsOf(unit)) {
+        Set<Unit> in = defsAt.get(succ);
+        if (in == null) {
+          in = new HashSet<Unit>();
+          defsAt.put(succ, in);
+        }
+        if (in.addAll(out) && !defs.contains(succ)) {
+          worklist.add(succ);
+        }
+      }
+    }
+    return defsAt;
+  }
+
   void dbg(Value v, String msg) {
     if (v instanceof Local) {
       Local l = (Local) v;
@@ -177,7 +241,7 @@ public class LocalDefUse {
     Iterator<Unit> oit = usesOld.iterator();
     while (oit.hasNext()) {
       Unit use = oit.next();
-      List<Unit> defsOldAtStmt = sld.getDefsOfAt(oldRes, use);
+      Set<Unit> defsOldAtStmt = getDefsOfAt(oldRes, use);
       if (defsOldAtStmt.size() > 1)
         return false;
     }
@@ -190,9 +254,8 @@ public class LocalDefUse {
 
     Set<Unit> usesOld = getUses(oldRes);
     if (usesOld != null) {
-      Iterator<Unit> oit = usesOld.iterator();
-      while (oit.hasNext()) {
-        Unit u = oit.next();
+      // The uses of oldRes change while they are replaced.
+      for (Unit u : new ArrayList<Unit>(usesOld)) {
         List<ValueBox> uselst = u.getUseBoxes();
         Iterator<ValueBox> it = uselst.iterator();
         while (it.hasNext()) {
@@ -200,18 +263,37 @@ public class LocalDefUse {
           Value v = vb.getValue();
           if (v == oldRes) {
             vb.setValue(newRes); // replace old use
-            remove(l2use, oldRes, stmt); // old def no longer used here
-            add(l2use, newRes, stmt); // new def used now
+            remove(l2use, oldRes, u); // old def no longer used here
+            add(l2use, newRes, u); // new def used now
           }
         }
       }
-      graph = new ExceptionalUnitGraph(body);
-      sld = new SmartLocalDefs(graph, new SimpleLiveLocals(graph));
     }
     astmt.setLeftOp(newRes); // replace result
     remove(l2def, oldRes, stmt); // old def no longer cached
     add(l2def, newRes, stmt); // new def cached
 
+    // The control flow is unchanged, only the definitions of these two locals are.
+    reachingDefs.remove(oldRes);
+    reachingDefs.remove(newRes);
+
     return true;
   }
+
+  /**
+   * Replaces a unit of the body with another one, at the same place in the control flow.
+   * 
+   * @param oldUnit A unit of the body.
+   * @param newUnit The unit that replaces it.
+   */
+  void replaceUnit(Unit oldUnit, Unit newUnit) {
+    body.getUnits().insertAfter(newUnit, oldUnit);
+    body.getUnits().remove(oldUnit);
+    deleteUnit(oldUnit);
+    recordUnit(newUnit);
+
+    // The reaching definitions are keyed by the units of the old graph.
+    graph = null;
+    reachingDefs.clear();
+  }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.arguments;
+
+import edu.psu.cse.siis.coal.AnalysisContext;
+import soot.SootMethod;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A bounded cache of per-method data shared by the argument value analyses and the result builder:
+ * the unit graph of the method body, the index of its local definitions and the string constraint
+ * collector, which holds the reaching definitions and the constraints already merged for a
+ * variable at a statement. There is one cache per analysis context. Without it, every argument
+ * value query rebuilds these for the enclosing method.
+ */
+public class MethodAnalysisCache {
+  /**
+   * The default maximum number of methods for which data is kept.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+  private volatile LoadingCache<SootMethod, MethodEntry> cache;
+
+  private static final class MethodEntry {
+    private final ExceptionalUnitGraph graph;
+    private volatile ConstraintCollector constraintCollector;
+    private volatile DefinitionIndex definitionIndex;
+
+    MethodEntry(SootMethod method) {
+      // The body is changed while string constraints are collected for it (see
+      // ConstraintCollector.handleMethodOnce), which holds the same lock.
+      synchronized (method) {
+        this.graph = new ExceptionalUnitGraph(method.getActiveBody());
+      }
+    }
+
+    ConstraintCollector getConstraintCollector() {
+      ConstraintCollector result = constraintCollector;
+      if (result == null) {
+        synchronized (this) {
+          result = constraintCollector;
+          if (result == null) {
+            result = new ConstraintCollector(graph);
+            constraintCollector = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    DefinitionIndex getDefinitionIndex() {
+      DefinitionIndex result = definitionIndex;
+      if (result == null) {
+        synchronized (this) {
+          result = definitionIndex;
+          if (result == null) {
+            result = new DefinitionIndex(graph);
+            definitionIndex = result;
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  private MethodAnalysisCache() {
+    setMaximumSize(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Returns the cache of the current analysis context.
+   *
+   * @return The cache of the current analysis context.
+   */
+  public static MethodAnalysisCache v() {
+    return AnalysisContext.current().getAttribute(MethodAnalysisCache.class,
+        MethodAnalysisCache::new);
+  }
+
+  /**
+   * Sets the maximum number of methods for which data is kept. This clears the cache.
+   *
+   * @param maximumSize The maximum number of methods.
+   */
+  public void setMaximumSize(int maximumSize) {
+    cache =
+        CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats()
+            .build(new CacheLoader<SootMethod, MethodEntry>() {
+              @Override
+              public MethodEntry load(SootMethod method) {
+                return new MethodEntry(method);
+              }
+            });
+  }
+
+  /**
+   * Returns the unit graph for the active body of a method.
+   *
+   * @param method A method with an active body.
+   * @return The unit graph of the method body.
+   */
+  public ExceptionalUnitGraph getUnitGraph(SootMethod method) {
+    return cache.getUnchecked(method).graph;
+  }
+
+  /**
+   * Returns the index of the local definitions of a method, which answers the definition queries of
+   * the backward value analyses.
+   *
+   * @param method A method with an active body.
+   * @return The definition index of the method body.
+   */
+  DefinitionIndex getDefinitionIndex(SootMethod method) {
+    return cache.getUnchecked(method).getDefinitionIndex();
+  }
+
+  /**
+   * Returns the string constraint collector for a method. The constraints of the method are
+   * collected first if that has not been done yet.
+   *
+   * @param method A method with an active body.
+   * @return The constraint collector for the method.
+   */
+  ConstraintCollector getConstraintCollector(SootMethod method) {
+    if (ConstraintCollector.handleMethodOnce(method)) {
+      // The body was just changed, a graph built before is stale.
+      cache.invalidate(method);
+    }
+    return cache.getUnchecked(method).getConstraintCollector();
+  }
+
+  /**
+   * Removes all cached data, including the string values solved from the constraints. This should
+   * be called when the method bodies are changed or when a new application is analyzed.
+   */
+  public void clear() {
+    cache.invalidateAll();
+    RecursiveDAGSolverVisitorLC.clearSolvedValues();
+  }
+
+  /**
+   * Returns the number of lookups that found the data of the method in the cache.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Returns the number of lookups that had to build the data of the method.
+   *
+   * @return The miss count.
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = cache.stats();
+    return "Method analysis cache: " + cache.size() + " methods, " + stats.hitCount() + " hits, "
+        + stats.missCount() + " misses, " + stats.evictionCount() + " evictions";
+  }
+}
@@ -17,21 +17,27 @@
  */
 package edu.psu.cse.siis.coal.arguments;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import soot.Scene;
 import soot.SootMethod;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
+import edu.psu.cse.siis.coal.AnalysisContext;
+import edu.psu.cse.siis.coal.Constants;
 import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
 
 class RecursiveDAGSolverVisitorLC implements switchLC {
   // Must NOT be applied to a recursive graph
   boolean fieldMode = false;
 
-  static int g_uid = 0;
+  static final AtomicInteger g_uid = new AtomicInteger();
   int uid;
   int warnings = 0;
   Set<Object> result;
@@ -39,10 +45,78 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
   Set<LanguageConstraints> seen;
   LanguageConstraints.Box[] parameters;
   MethodReturnValueAnalysisInterface methodReturnValueAnalysisInterface;
+  // Number of times a cycle was cut, i.e., a value depended on the nodes being visited.
+  int cycleCuts = 0;
+
+  /*
+   * Solved values of unions, concatenations and calls, shared by all solvers of an analysis
+   * context. A value is only recorded if it does not depend on the nodes that were being visited
+   * when it was computed, and it is only reused while the constraints are unchanged.
+   */
+  private static final int MAX_SOLVED_VALUES = 10000;
+
+  @SuppressWarnings("serial")
+  private static final class SolvedValues extends ConcurrentHashMap<SolvedKey, SolvedValue> {
+  }
+
+  private final Map<SolvedKey, SolvedValue> solvedValues =
+      AnalysisContext.current().getAttribute(SolvedValues.class, SolvedValues::new);
+  private final AtomicInteger constraintGeneration = LanguageConstraints.getGeneration();
+
+  private static final class SolvedKey {
+    private final LanguageConstraints lc;
+    private final int inlineDepth;
+    private final LanguageConstraints.Box[] parameters;
+    private final boolean fieldMode;
+    private final Class<?> methodReturnValueAnalysisClass;
+
+    SolvedKey(LanguageConstraints lc, RecursiveDAGSolverVisitorLC solver) {
+      this.lc = lc;
+      this.inlineDepth = solver.inline_depth;
+      this.parameters = solver.parameters;
+      this.fieldMode = solver.fieldMode;
+      this.methodReturnValueAnalysisClass = solver.methodReturnValueAnalysisInterface.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(lc) + System.identityHashCode(parameters))
+          + inlineDepth * 2 + (fieldMode ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof SolvedKey)) {
+        return false;
+      }
+      SolvedKey otherKey = (SolvedKey) other;
+      return lc == otherKey.lc && parameters == otherKey.parameters
+          && inlineDepth == otherKey.inlineDepth && fieldMode == otherKey.fieldMode
+          && methodReturnValueAnalysisClass == otherKey.methodReturnValueAnalysisClass;
+    }
+  }
+
+  private static final class SolvedValue {
+    private final Set<Object> values;
+    private final int generation;
+
+    SolvedValue(Set<Object> values, int generation) {
+      this.values = values;
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * Discards all solved values of the current analysis context. This should be called when the
+   * method bodies are changed.
+   */
+  static void clearSolvedValues() {
+    AnalysisContext.current().getAttribute(SolvedValues.class, SolvedValues::new).clear();
+  }
 
   RecursiveDAGSolverVisitorLC(int inline_depth0, LanguageConstraints.Box[] actual_arguments,
       MethodReturnValueAnalysisInterface mrvai) {
-    uid = g_uid++;
+    uid = g_uid.getAndIncrement();
     seen = new HashSet<LanguageConstraints>();
     result = new HashSet<Object>();
     parameters = actual_arguments;
@@ -67,6 +141,40 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
     this(0);
   }
 
+  /*
+   * Adds the previously solved values of a node to the result, if any. Otherwise, starts solving
+   * the node into a fresh result set and returns the set the caller should restore when done.
+   */
+  private Set<Object> startSolving(LanguageConstraints lc) {
+    SolvedValue solvedValue = solvedValues.get(new SolvedKey(lc, this));
+    if (solvedValue != null && solvedValue.generation == constraintGeneration.get()) {
+      result.addAll(solvedValue.values);
+      return null;
+    }
+    Set<Object> old_result = result;
+    result = new HashSet<Object>();
+    return old_result;
+  }
+
+  private void endSolving(LanguageConstraints lc, Set<Object> old_result, int generation,
+      int old_cycleCuts) {
+    Set<Object> values = result;
+    result = old_result;
+    result.addAll(values);
+    if (cycleCuts == old_cycleCuts && generation == constraintGeneration.get()) {
+      if (solvedValues.size() >= MAX_SOLVED_VALUES) {
+        solvedValues.clear();
+      }
+      solvedValues.put(new SolvedKey(lc, this),
+          new SolvedValue(Collections.unmodifiableSet(values), generation));
+    }
+  }
+
+  private void cutCycle() {
+    ++cycleCuts;
+    result.add("(.*)");
+  }
+
   boolean solve(LanguageConstraints.Box lcb) {
     if (lcb == null)
       return false;
@@ -116,7 +224,13 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
   @Override
   public void caseUnion(LanguageConstraints.Union lc) {
     if (seen.contains(lc)) {
-      result.add("(.*)");
+      cutCycle();
+      return;
+    }
+    int generation = constraintGeneration.get();
+    int old_cycleCuts = cycleCuts;
+    Set<Object> old_result = startSolving(lc);
+    if (old_result == null) {
       return;
     }
     seen.add(lc);
@@ -127,12 +241,19 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
     }
     assert (seen.contains(lc));
     seen.remove(lc);
+    endSolving(lc, old_result, generation, old_cycleCuts);
   }
 
   @Override
   public void caseConcatenate(LanguageConstraints.Concatenate lc) {
     if (seen.contains(lc)) {
-      result.add("(.*)");
+      cutCycle();
+      return;
+    }
+    int generation = constraintGeneration.get();
+    int old_cycleCuts = cycleCuts;
+    Set<Object> solved_result = startSolving(lc);
+    if (solved_result == null) {
       return;
     }
     seen.add(lc);
@@ -149,25 +270,31 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
 
     assert (!CCRefVisitor.ARRAY_FIELDS || !left_result.isEmpty());
     assert (!CCRefVisitor.ARRAY_FIELDS || !right_result.isEmpty());
-    for (Iterator<Object> lit = left_result.iterator(); lit.hasNext();) {
-      Object lstr = lit.next();
-      for (Iterator<Object> rit = right_result.iterator(); rit.hasNext();) {
-        Object rstr = rit.next();
-        if (lstr instanceof String && rstr instanceof String) {
-          result.add((String) lstr + (String) rstr);
-        } else {
-          result.add("(.*)");
+    if ((long) left_result.size() * right_result.size() > Constants.VALUE_LIMIT) {
+      // Widen instead of building a cartesian product with too many strings.
+      result.add("(.*)");
+    } else {
+      for (Iterator<Object> lit = left_result.iterator(); lit.hasNext();) {
+        Object lstr = lit.next();
+        for (Iterator<Object> rit = right_result.iterator(); rit.hasNext();) {
+          Object rstr = rit.next();
+          if (lstr instanceof String && rstr instanceof String) {
+            result.add((String) lstr + (String) rstr);
+          } else {
+            result.add("(.*)");
+          }
         }
       }
     }
     assert (seen.contains(lc));
     seen.remove(lc);
+    endSolving(lc, solved_result, generation, old_cycleCuts);
   }
 
   @Override
   public void caseEq(LanguageConstraints.Eq lc) {
     if (seen.contains(lc)) {
-      result.add("(.*)");
+      cutCycle();
       return;
     }
     seen.add(lc);
@@ -191,6 +318,12 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
     if (inline_depth == 0)
       result.add("(.*)");
     else {
+      int generation = constraintGeneration.get();
+      int old_cycleCuts = cycleCuts;
+      Set<Object> old_result = startSolving(lc);
+      if (old_result == null) {
+        return;
+      }
       Set<Object> methodReturnValues = methodReturnValueAnalysisInterface.getMethodReturnValues(lc);
       if (methodReturnValues == null) {
         // Take care of parameters!
@@ -228,6 +361,7 @@ class RecursiveDAGSolverVisitorLC implements switchLC {
       } else {
         result.addAll(methodReturnValues);
       }
+      endSolving(lc, old_result, generation, old_cycleCuts);
     }
   }
 }
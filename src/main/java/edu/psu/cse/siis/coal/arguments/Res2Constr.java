@@ -17,34 +17,53 @@
  */
 package edu.psu.cse.siis.coal.arguments;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import edu.psu.cse.siis.coal.AnalysisContext;
 import soot.SootMethod;
 import soot.jimple.FieldRef;
 import soot.jimple.ReturnStmt;
 import soot.jimple.Stmt;
 
+/*
+ * The maps are shared by all the IDE solver threads: they are concurrent maps and boxes are only
+ * ever created once per key (computeIfAbsent). Updates of a box are synchronized on the box itself.
+ * There is one set of maps per analysis context.
+ */
 class Res2Constr {
-  private static Map<Stmt, LanguageConstraints.Box> stmt2constr =
-      new HashMap<Stmt, LanguageConstraints.Box>();
-  private static Set<Stmt> processed = new HashSet<Stmt>();
+  private final Map<Stmt, LanguageConstraints.Box> stmt2constr =
+      new ConcurrentHashMap<Stmt, LanguageConstraints.Box>();
+  private final Set<Stmt> processed = ConcurrentHashMap.newKeySet();
+  private final Map<String, LanguageConstraints.Box> field2constr =
+      new ConcurrentHashMap<String, LanguageConstraints.Box>();
+  private final Map<SootMethod, LanguageConstraints.Box> ret2constr =
+      new ConcurrentHashMap<SootMethod, LanguageConstraints.Box>();
+  private final Map<String, LanguageConstraints.Box> argument2constr =
+      new ConcurrentHashMap<String, LanguageConstraints.Box>();
+
+  private static Res2Constr v() {
+    return AnalysisContext.current().getAttribute(Res2Constr.class, Res2Constr::new);
+  }
 
   // /////////////////////////////////////////////
   static LanguageConstraints.Box getStmt(Stmt s) {
-    LanguageConstraints.Box lcb = stmt2constr.get(s);
+    LanguageConstraints.Box lcb = v().stmt2constr.get(s);
     if (lcb == null) {
-      lcb = new LanguageConstraints.Box();// //LanguageConstraints.PendingBox()
-      stmt2constr.put(s, lcb);
-      assert (stmt2constr.get(s) == lcb);
+      lcb = v().stmt2constr.computeIfAbsent(s, k -> new LanguageConstraints.Box());
     }
     assert (lcb != null);
     return lcb;
   }
 
   private static void putInBox(LanguageConstraints.Box lcb, LanguageConstraints.Box new_lcb) {
+    synchronized (lcb) {
+      putInBoxLocked(lcb, new_lcb);
+    }
+  }
+
+  private static void putInBoxLocked(LanguageConstraints.Box lcb, LanguageConstraints.Box new_lcb) {
     LanguageConstraints lc = lcb.getLC();
     /*
      * TBD: optimize and get rid of some of the LanguageConstraints.Eq If rop_lcb is a "temporary",
@@ -77,26 +96,19 @@ class Res2Constr {
   }
 
   static boolean checkAndSetProcessedStmt(Stmt s) {
-    boolean res = processed.contains(s);
-    processed.add(s);
-    return res;
+    return !v().processed.add(s);
   }
 
   // ///////////////////////////////////////
-  private static Map<String, LanguageConstraints.Box> field2constr =
-      new HashMap<String, LanguageConstraints.Box>();
-
   static Map<String, LanguageConstraints.Box> get_field2constr() {
-    return field2constr;
+    return v().field2constr;
   }
 
   static LanguageConstraints.Box getField(FieldRef fr) {
     String key = fr.getField().toString();
-    LanguageConstraints.Box lcb = field2constr.get(key);
+    LanguageConstraints.Box lcb = v().field2constr.get(key);
     if (lcb == null) {
-      lcb = new LanguageConstraints.FieldBox();// //LanguageConstraints.PendingBox()
-      field2constr.put(key, lcb);
-      assert (field2constr.get(key) == lcb);
+      lcb = v().field2constr.computeIfAbsent(key, k -> new LanguageConstraints.FieldBox());
     }
     assert (lcb != null);
     return lcb;
@@ -108,20 +120,15 @@ class Res2Constr {
   }
 
   // ///////////////////////////////////////
-  private static Map<SootMethod, LanguageConstraints.Box> ret2constr =
-      new HashMap<SootMethod, LanguageConstraints.Box>();
-
   static boolean knownReturn(SootMethod method) {
-    return ret2constr.containsKey(method);
+    return v().ret2constr.containsKey(method);
   }
 
   static LanguageConstraints.Box getReturn(SootMethod method) {
     SootMethod key = method;
-    LanguageConstraints.Box lcb = ret2constr.get(key);
+    LanguageConstraints.Box lcb = v().ret2constr.get(key);
     if (lcb == null) {
-      lcb = new LanguageConstraints.Box();// //LanguageConstraints.PendingBox()
-      ret2constr.put(key, lcb);
-      assert (ret2constr.get(key) == lcb);
+      lcb = v().ret2constr.computeIfAbsent(key, k -> new LanguageConstraints.Box());
     }
     assert (lcb != null);
     return lcb;
@@ -133,16 +140,11 @@ class Res2Constr {
   }
 
   // ///////////////////////////////////////
-  private static Map<String, LanguageConstraints.Box> argument2constr =
-      new HashMap<String, LanguageConstraints.Box>();
-
   static LanguageConstraints.Box getArgument(SootMethod sm, int arg) {
     String key = sm.getSignature() + "#" + arg;
-    LanguageConstraints.Box lcb = argument2constr.get(key);
+    LanguageConstraints.Box lcb = v().argument2constr.get(key);
     if (lcb == null) {
-      lcb = new LanguageConstraints.Box();// //LanguageConstraints.PendingBox()
-      argument2constr.put(key, lcb);
-      assert (argument2constr.get(key) == lcb);
+      lcb = v().argument2constr.computeIfAbsent(key, k -> new LanguageConstraints.Box());
     }
     assert (lcb != null);
     return lcb;
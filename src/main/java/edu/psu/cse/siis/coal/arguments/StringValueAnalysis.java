@@ -24,13 +24,16 @@ import java.util.HashSet;
 import java.util.Set;
 
 import soot.Local;
+import soot.Scene;
+import soot.SootClass;
 import soot.Value;
 import soot.jimple.NullConstant;
 import soot.jimple.Stmt;
 import soot.jimple.StringConstant;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import edu.psu.cse.siis.coal.AnalysisParameters;
 import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.Model;
+import edu.psu.cse.siis.coal.PackageMatcher;
 import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
 
 /**
@@ -38,6 +41,9 @@ import edu.psu.cse.siis.coal.arguments.LanguageConstraints.Call;
  */
 public class StringValueAnalysis extends ArgumentValueAnalysis {
   private static final String TOP_VALUE = Constants.ANY_STRING;
+  private static final PackageMatcher SYSTEM_PACKAGES = new PackageMatcher.Builder()
+      .addPrefix("android.").addPrefix("androidx.").addPrefix("dalvik.").addPrefix("java.")
+      .addPrefix("javax.").addPrefix("sun.").build();
 
   /**
    * Initializes the string argument value analysis. This should be called before using the
@@ -54,6 +60,22 @@ public class StringValueAnalysis extends ArgumentValueAnalysis {
     });
   }
 
+  /**
+   * Collects the string constraints of the reachable application methods up front, in parallel.
+   * Library classes, system packages and the classes excluded by the model are left out. Their
+   * constraints are still collected on demand, when a value is queried in one of their methods.
+   */
+  public static void initializeApplication() {
+    ConstraintCollector.applicationCollection(new ConstraintCollector.ModelInterface() {
+      @Override
+      public boolean isExcludedClass(String class_name) {
+        SootClass sootClass = Scene.v().getSootClassUnsafe(class_name, false);
+        return sootClass == null || !sootClass.isApplicationClass()
+            || SYSTEM_PACKAGES.matches(class_name) || Model.v().isExcludedClass(class_name);
+      }
+    });
+  }
+
   @Override
   public Set<Object> computeInlineArgumentValues(String[] inlineValues) {
     return new HashSet<Object>(Arrays.asList(inlineValues));
@@ -76,8 +98,8 @@ public class StringValueAnalysis extends ArgumentValueAnalysis {
       Local local = (Local) value;
 
       ConstraintCollector constraintCollector =
-          new ConstraintCollector(new ExceptionalUnitGraph(AnalysisParameters.v().getIcfg()
-              .getMethodOf(stmt).getActiveBody()));
+          MethodAnalysisCache.v().getConstraintCollector(
+              AnalysisParameters.v().getIcfg().getMethodOf(stmt));
       LanguageConstraints.Box lcb = constraintCollector.getConstraintOfAt(local, stmt);
       RecursiveDAGSolverVisitorLC dagvlc =
           new RecursiveDAGSolverVisitorLC(5, null,
@@ -34,7 +34,7 @@ import edu.psu.cse.siis.coal.values.PathValue;
  * transformers.
  */
 public class PathTransformer implements Internable<PathTransformer> {
-  private static final Pool<PathTransformer> POOL = new Pool<>();
+  private static final Pool<PathTransformer> POOL = new Pool<>("PathTransformer");
 
   protected Map<String, FieldTransformer> fieldMap;
 
@@ -59,13 +59,13 @@ public class PathTransformer implements Internable<PathTransformer> {
    * @return The resulting PathValue.
    */
   public PathValue computeTarget(PathValue source) {
-    Map<String, FieldValue> secondFieldMap = source.getFieldMap();
-    PathValue result = new PathValue();
+    // The fields that are not transformed are copied.
+    PathValue result = new PathValue(source);
 
     for (Map.Entry<String, FieldTransformer> entry : this.fieldMap.entrySet()) {
       String field = entry.getKey();
       FieldTransformer fieldTransformer = entry.getValue();
-      FieldValue fieldValue = secondFieldMap.get(field);
+      FieldValue fieldValue = source.getFieldValue(field);
 
       if (fieldValue == null) {
         fieldValue = NullFieldValue.v();
@@ -78,14 +78,7 @@ public class PathTransformer implements Internable<PathTransformer> {
       }
     }
 
-    for (Map.Entry<String, FieldValue> entry : secondFieldMap.entrySet()) {
-      String field = entry.getKey();
-      if (!this.fieldMap.containsKey(field)) {
-        result.addFieldEntry(field, entry.getValue());
-      }
-    }
-
-    return result;
+    return result.intern();
   }
 
   /**
@@ -27,7 +27,7 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.psu.cse.siis.coal.Constants;
+import edu.psu.cse.siis.coal.AnalysisMetrics;
 import edu.psu.cse.siis.coal.Internable;
 import edu.psu.cse.siis.coal.Pool;
 import edu.psu.cse.siis.coal.values.BasePropagationValue;
@@ -38,14 +38,46 @@ import edu.psu.cse.siis.coal.values.TopPropagationValue;
 /**
  * An MVMF constant propagation transformer. This is a set of {@link PathTransformer} elements and
  * therefore it accounts for several execution paths.
+ * <p>
+ * Compositions and meets are bounded by the {@link WideningPolicy} of the transformer. The size of
+ * the result is estimated before any work is done, so that results that are certain to exceed the
+ * value limit are widened to {@link TopPropagationTransformer} without being computed. Widenings
+ * are counted in the {@link AnalysisMetrics} of the analysis, as propagationTransformer.widenings
+ * (widened after a partial computation) and propagationTransformer.estimatedWidenings (widened
+ * before any computation).
+ * </p>
  */
 public class PropagationTransformer implements EdgeFunction<BasePropagationValue>,
     Internable<PropagationTransformer> {
-  private static final Pool<PropagationTransformer> POOL = new Pool<>();
+  private static final Pool<PropagationTransformer> POOL = new Pool<>("PropagationTransformer");
+  private static final String WIDENINGS = "propagationTransformer.widenings";
+  private static final String ESTIMATED_WIDENINGS = "propagationTransformer.estimatedWidenings";
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  private Set<PathTransformer> pathTransformers = new HashSet<>(2);
+  private final WideningPolicy wideningPolicy;
+  private final Set<PathTransformer> pathTransformers;
+
+  /**
+   * Constructor for a transformer with the default {@link WideningPolicy}.
+   */
+  public PropagationTransformer() {
+    this(WideningPolicy.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param wideningPolicy The policy used to widen the results of compositions and meets.
+   */
+  public PropagationTransformer(WideningPolicy wideningPolicy) {
+    this(wideningPolicy, 2);
+  }
+
+  private PropagationTransformer(WideningPolicy wideningPolicy, int expectedSize) {
+    this.wideningPolicy = wideningPolicy;
+    this.pathTransformers = new HashSet<>(Math.max(2, (int) (expectedSize / 0.75f) + 1));
+  }
 
   /**
    * Adds a {@link PathTransformer} to this propagation transformer.
@@ -56,6 +88,15 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
     this.pathTransformers.add(pathTransformer);
   }
 
+  /**
+   * Returns the policy used to widen the results of compositions and meets.
+   * 
+   * @return The widening policy.
+   */
+  public WideningPolicy getWideningPolicy() {
+    return wideningPolicy;
+  }
+
   @Override
   public PropagationValue computeTarget(BasePropagationValue source) {
     PropagationValue result = new PropagationValue();
@@ -82,15 +123,40 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
       logger.debug("Composing " + this + " with " + secondFunction);
     }
     if (secondFunction instanceof PropagationTransformer) {
-      Set<PathTransformer> secondPathTransformers =
-          ((PropagationTransformer) secondFunction).pathTransformers;
-      PropagationTransformer result = new PropagationTransformer();
-
-      for (PathTransformer pathTransformer : pathTransformers) {
-        for (PathTransformer secondPathTransformer : secondPathTransformers) {
-          result.pathTransformers.add(pathTransformer.compose(secondPathTransformer));
-          if (result.pathTransformers.size() > Constants.VALUE_LIMIT) {
-            return TopPropagationTransformer.v();
+      PropagationTransformer second = (PropagationTransformer) secondFunction;
+      WideningPolicy policy = this.wideningPolicy.combineWith(second.wideningPolicy);
+
+      int limit = policy.getValueLimit();
+      // The identity path transformer composed with another one returns the other one.
+      if (policy == second.wideningPolicy && isIdentity()
+          && second.pathTransformers.size() <= limit) {
+        return second.intern();
+      }
+
+      long upperBound = (long) this.pathTransformers.size() * second.pathTransformers.size();
+      if (policy.widensComposition(upperBound)) {
+        AnalysisMetrics.v().increment(ESTIMATED_WIDENINGS, 1);
+        return TopPropagationTransformer.v();
+      }
+
+      PropagationTransformer result =
+          new PropagationTransformer(policy, (int) Math.min(upperBound, limit + 1));
+      if (upperBound <= limit) {
+        // The result cannot exceed the limit, no need to check its size.
+        for (PathTransformer pathTransformer : pathTransformers) {
+          for (PathTransformer secondPathTransformer : second.pathTransformers) {
+            result.pathTransformers.add(pathTransformer.compose(secondPathTransformer));
+          }
+        }
+      } else {
+        // Compositions may be equal, so only the actual size of the result can be checked.
+        for (PathTransformer pathTransformer : pathTransformers) {
+          for (PathTransformer secondPathTransformer : second.pathTransformers) {
+            if (result.pathTransformers.add(pathTransformer.compose(secondPathTransformer))
+                && result.pathTransformers.size() > limit) {
+              AnalysisMetrics.v().increment(WIDENINGS, 1);
+              return TopPropagationTransformer.v();
+            }
           }
         }
       }
@@ -107,26 +173,67 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
   @Override
   public EdgeFunction<BasePropagationValue> meetWith(
       EdgeFunction<BasePropagationValue> otherFunction) {
+    if (otherFunction == this) {
+      return this;
+    }
     if (otherFunction instanceof PropagationTransformer) {
-      PropagationTransformer result = new PropagationTransformer();
-      result.pathTransformers.addAll(this.pathTransformers);
-      result.pathTransformers.addAll(((PropagationTransformer) otherFunction).pathTransformers);
+      PropagationTransformer other = (PropagationTransformer) otherFunction;
+      WideningPolicy policy = this.wideningPolicy.combineWith(other.wideningPolicy);
+      int limit = policy.getValueLimit();
 
-      if (result.pathTransformers.size() > Constants.VALUE_LIMIT) {
+      PropagationTransformer larger = this;
+      PropagationTransformer smaller = other;
+      if (other.pathTransformers.size() > this.pathTransformers.size()) {
+        larger = other;
+        smaller = this;
+      }
+      // The meet contains at least all the elements of the larger set.
+      if (larger.pathTransformers.size() > limit) {
+        AnalysisMetrics.v().increment(ESTIMATED_WIDENINGS, 1);
         return TopPropagationTransformer.v();
       }
+      if (policy == larger.wideningPolicy
+          && larger.pathTransformers.containsAll(smaller.pathTransformers)) {
+        return larger.intern();
+      }
+
+      int upperBound = larger.pathTransformers.size() + smaller.pathTransformers.size();
+      PropagationTransformer result =
+          new PropagationTransformer(policy, Math.min(upperBound, limit + 1));
+      result.pathTransformers.addAll(larger.pathTransformers);
+      if (upperBound <= limit) {
+        result.pathTransformers.addAll(smaller.pathTransformers);
+      } else {
+        for (PathTransformer pathTransformer : smaller.pathTransformers) {
+          if (result.pathTransformers.add(pathTransformer)
+              && result.pathTransformers.size() > limit) {
+            AnalysisMetrics.v().increment(WIDENINGS, 1);
+            return TopPropagationTransformer.v();
+          }
+        }
+      }
       return result.intern();
     }
     return this;
   }
 
+  /*
+   * Determines if this transformer only contains the identity path transformer, which is how
+   * PropagationTransformerFactory starts the composition of modifier arguments.
+   */
+  private boolean isIdentity() {
+    return pathTransformers.size() == 1
+        && pathTransformers.iterator().next() == IdentityPathTransformer.v();
+  }
+
   @Override
   public boolean equalTo(EdgeFunction<BasePropagationValue> other) {
     if (!(other instanceof PropagationTransformer)) {
       return false;
     }
     PropagationTransformer secondTransformer = (PropagationTransformer) other;
-    return this.pathTransformers.equals(secondTransformer.pathTransformers);
+    return this.wideningPolicy.equals(secondTransformer.wideningPolicy)
+        && this.pathTransformers.equals(secondTransformer.pathTransformers);
   }
 
   @Override
@@ -143,14 +250,17 @@ public class PropagationTransformer implements EdgeFunction<BasePropagationValue
 
   @Override
   public int hashCode() {
-    return this.pathTransformers.hashCode();
+    return Objects.hash(this.wideningPolicy, this.pathTransformers);
   }
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof PropagationTransformer
-        && Objects.equals(this.pathTransformers,
-            ((PropagationTransformer) other).equals(pathTransformers));
+    if (!(other instanceof PropagationTransformer)) {
+      return false;
+    }
+    PropagationTransformer secondTransformer = (PropagationTransformer) other;
+    return Objects.equals(this.wideningPolicy, secondTransformer.wideningPolicy)
+        && Objects.equals(this.pathTransformers, secondTransformer.pathTransformers);
   }
 
   @Override
@@ -53,12 +53,15 @@ public class PropagationTransformerFactory {
    * @param alias Specifies whether the base of the call may be an alias of the symbol the call is
    *          associated with. A false value for this parameter indicates that the symbol and the
    *          base MUST point to each other.
+   * @param modeledType The type of the symbol the call is associated with, which determines the
+   *          {@link WideningPolicy} of the edge function.
    * @return An edge function, which may either be a {@link PropagationTransformer}, or a
    *         {@link TopPropagationTransformer}.
    */
   public static EdgeFunction<BasePropagationValue> makeTransformer(Unit callSite,
-      Argument[] arguments, boolean alias) {
-    PropagationTransformer result = new PropagationTransformer();
+      Argument[] arguments, boolean alias, String modeledType) {
+    WideningPolicy wideningPolicy = AnalysisParameters.v().getWideningPolicy(modeledType);
+    PropagationTransformer result = new PropagationTransformer(wideningPolicy);
 
     if (callSite == null && arguments == null) {
       result.addPathTransformer(NullPathTransformer.v());
@@ -66,7 +69,8 @@ public class PropagationTransformerFactory {
       result.addPathTransformer(IdentityPathTransformer.v());
 
       for (Argument argument : arguments) {
-        PropagationTransformer newTransformer = makeTransformerForArgument(callSite, argument);
+        PropagationTransformer newTransformer =
+            makeTransformerForArgument(callSite, argument, wideningPolicy);
         EdgeFunction<BasePropagationValue> newResult = result.composeWith(newTransformer);
         if (newResult instanceof TopPropagationTransformer) {
           return TopPropagationTransformer.v();
@@ -84,11 +88,12 @@ public class PropagationTransformerFactory {
    * 
    * @param callSite A call site that is a COAL modifier.
    * @param argument An {@link Argument Argument}.
+   * @param wideningPolicy The widening policy of the transformer.
    * @return A PropagationTransformer.
    */
-  private static PropagationTransformer
-      makeTransformerForArgument(Unit callSite, Argument argument) {
-    PropagationTransformer transformer = new PropagationTransformer();
+  private static PropagationTransformer makeTransformerForArgument(Unit callSite,
+      Argument argument, WideningPolicy wideningPolicy) {
+    PropagationTransformer transformer = new PropagationTransformer(wideningPolicy);
 
     if (Model.v().isModeledType(argument.getType())) {
       // The argument is a modeled type. We cannot necessarily directly infer the influence of the
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.transformers;
+
+import edu.psu.cse.siis.coal.Constants;
+
+/**
+ * Determines when a {@link PropagationTransformer} is widened to a
+ * {@link TopPropagationTransformer}. A transformer is always widened once it contains more than
+ * {@link #getValueLimit()} path transformers. An eager policy also widens a composition whose
+ * estimated size exceeds the limit, without computing it. This is faster on call sites with many
+ * possible values, but it may lose values that would have been merged by the composition.
+ * <p>
+ * Policies are set per modeled type using
+ * {@link edu.psu.cse.siis.coal.AnalysisParameters#setWideningPolicy(String, WideningPolicy)},
+ * e.g., with the {@code -widening} command line option (see
+ * {@link edu.psu.cse.siis.coal.CommandLineParser}).
+ * </p>
+ */
+public class WideningPolicy {
+  /**
+   * The default policy, which only widens transformers with more than
+   * {@link Constants#VALUE_LIMIT} path transformers.
+   */
+  public static final WideningPolicy DEFAULT = new WideningPolicy(Constants.VALUE_LIMIT, false);
+
+  private final int valueLimit;
+  private final boolean eager;
+
+  /**
+   * Constructor.
+   * 
+   * @param valueLimit The maximum number of path transformers in a transformer.
+   * @param eager True if compositions should be widened as soon as their estimated size exceeds
+   *          the value limit.
+   */
+  public WideningPolicy(int valueLimit, boolean eager) {
+    if (valueLimit < 1) {
+      throw new IllegalArgumentException("Value limit should be positive: " + valueLimit);
+    }
+    this.valueLimit = valueLimit;
+    this.eager = eager;
+  }
+
+  /**
+   * Returns the policy described by a string of the form {@code <value limit>[:eager|:exact]},
+   * e.g., "64:eager". Policies are exact unless stated otherwise.
+   * 
+   * @param description The description of the policy.
+   * @return The policy.
+   * @throws IllegalArgumentException if the description is malformed.
+   */
+  public static WideningPolicy fromString(String description) {
+    String[] parts = description.trim().split(":", -1);
+    if (parts.length > 2 || (parts.length == 2 && !parts[1].equals("eager")
+        && !parts[1].equals("exact"))) {
+      throw new IllegalArgumentException("Expected <value limit>[:eager|:exact]: " + description);
+    }
+    return new WideningPolicy(Integer.parseInt(parts[0].trim()),
+        parts.length == 2 && parts[1].equals("eager"));
+  }
+
+  /**
+   * Returns the maximum number of path transformers in a transformer.
+   * 
+   * @return The value limit.
+   */
+  public int getValueLimit() {
+    return valueLimit;
+  }
+
+  /**
+   * Determines if compositions are widened based on their estimated size.
+   * 
+   * @return True if compositions are widened based on their estimated size.
+   */
+  public boolean isEager() {
+    return eager;
+  }
+
+  /**
+   * Determines if a composition should be widened before it is computed.
+   * 
+   * @param upperBound An upper bound on the size of the composition.
+   * @return True if the composition should be widened to top.
+   */
+  boolean widensComposition(long upperBound) {
+    return eager && upperBound > valueLimit;
+  }
+
+  /**
+   * Returns the policy of the combination of two transformers, which is the stricter of the two
+   * policies.
+   * 
+   * @param other Another policy.
+   * @return The combined policy.
+   */
+  WideningPolicy combineWith(WideningPolicy other) {
+    if (this == other || this.equals(other)) {
+      return this;
+    }
+    int limit = Math.min(this.valueLimit, other.valueLimit);
+    boolean combinedEager = this.eager || other.eager;
+    if (this.valueLimit == limit && this.eager == combinedEager) {
+      return this;
+    }
+    if (other.valueLimit == limit && other.eager == combinedEager) {
+      return other;
+    }
+    return new WideningPolicy(limit, combinedEager);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * valueLimit + (eager ? 1 : 0);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof WideningPolicy)) {
+      return false;
+    }
+    WideningPolicy otherPolicy = (WideningPolicy) other;
+    return this.valueLimit == otherPolicy.valueLimit && this.eager == otherPolicy.eager;
+  }
+
+  @Override
+  public String toString() {
+    return (eager ? "eager" : "exact") + " widening above " + valueLimit + " values";
+  }
+}
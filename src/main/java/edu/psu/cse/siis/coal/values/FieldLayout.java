@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Pennsylvania State University and the University of Wisconsin
+ * Systems and Internet Infrastructure Security Laboratory
+ *
+ * Author: Damien Octeau
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.cse.siis.coal.values;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The field names of a {@link PathValue}, in sorted order, which maps each field to a dense index
+ * in the field value array of the path value. Layouts are canonical: all path values with the same
+ * fields (e.g., all the path values of a modeled type) share one layout, so they can be compared
+ * slot by slot.
+ */
+final class FieldLayout {
+  private static final ConcurrentMap<List<String>, FieldLayout> LAYOUTS =
+      new ConcurrentHashMap<>();
+
+  static final FieldLayout EMPTY = of(new String[0]);
+
+  private final String[] fields;
+  private final List<String> fieldList;
+  private final int hashCode;
+  // Layouts with one more field, which path values go through while they are built.
+  private final ConcurrentMap<String, FieldLayout> extensions = new ConcurrentHashMap<>();
+
+  private FieldLayout(String[] fields) {
+    this.fields = fields;
+    this.fieldList = Collections.unmodifiableList(Arrays.asList(fields));
+    this.hashCode = Arrays.hashCode(fields);
+  }
+
+  /**
+   * Returns the canonical layout for sorted field names.
+   * 
+   * @param sortedFields Sorted field names, which should not be modified afterwards.
+   * @return The layout.
+   */
+  private static FieldLayout of(String[] sortedFields) {
+    List<String> key = Arrays.asList(sortedFields);
+    FieldLayout layout = LAYOUTS.get(key);
+    if (layout == null) {
+      layout = LAYOUTS.computeIfAbsent(key, k -> new FieldLayout(sortedFields));
+    }
+    return layout;
+  }
+
+  /**
+   * Returns the index of a field.
+   * 
+   * @param field A field name.
+   * @return The index of the field, or -1 if it is not in this layout.
+   */
+  int indexOf(String field) {
+    // Layouts have a handful of fields, whose names are usually the same String instances.
+    for (int i = 0; i < fields.length; ++i) {
+      if (fields[i].equals(field)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  int size() {
+    return fields.length;
+  }
+
+  String getField(int index) {
+    return fields[index];
+  }
+
+  List<String> getFields() {
+    return fieldList;
+  }
+
+  /**
+   * Returns the layout with the fields of this layout and another field.
+   * 
+   * @param field A field name that is not in this layout.
+   * @return The extended layout, where the new field is at index
+   *         {@code extended.indexOf(field)}.
+   */
+  FieldLayout with(String field) {
+    FieldLayout extended = extensions.get(field);
+    if (extended == null) {
+      int position = -Arrays.binarySearch(fields, field) - 1;
+      String[] newFields = new String[fields.length + 1];
+      System.arraycopy(fields, 0, newFields, 0, position);
+      newFields[position] = field;
+      System.arraycopy(fields, position, newFields, position + 1, fields.length - position);
+      extended = of(newFields);
+      extensions.putIfAbsent(field, extended);
+    }
+    return extended;
+  }
+
+  /**
+   * Returns the layout with the fields of this layout except some of them.
+   * 
+   * @param removed Whether each field of this layout should be removed.
+   * @return The reduced layout.
+   */
+  FieldLayout without(boolean[] removed) {
+    int count = 0;
+    for (boolean remove : removed) {
+      if (!remove) {
+        ++count;
+      }
+    }
+    String[] newFields = new String[count];
+    int j = 0;
+    for (int i = 0; i < fields.length; ++i) {
+      if (!removed[i]) {
+        newFields[j++] = fields[i];
+      }
+    }
+    return of(newFields);
+  }
+
+  /*
+   * Layouts are canonical, so equals is identity. The hash code only depends on the field names, so
+   * that hash-based collections of path values iterate in the same order from one run to the next.
+   */
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
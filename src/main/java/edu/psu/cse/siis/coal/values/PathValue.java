@@ -18,15 +18,20 @@
  */
 package edu.psu.cse.siis.coal.values;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import edu.psu.cse.siis.coal.Internable;
+import edu.psu.cse.siis.coal.Pool;
 import edu.psu.cse.siis.coal.PropagationSolver;
 import edu.psu.cse.siis.coal.field.values.FieldValue;
 import edu.psu.cse.siis.coal.field.values.IntermediateFieldValue;
@@ -37,28 +42,90 @@ import edu.psu.cse.siis.coal.field.values.SetFieldValue;
 /**
  * A COAL value for a single execution path. This is essentially a collection of field values.
  * 
+ * <p>
+ * The field values are stored in an array, in the order of a {@link FieldLayout} that is shared by
+ * all the path values with the same fields. The hash code is cached. A path value can be modified
+ * with {@link #addFieldEntry} until it is interned, after which it is immutable.
+ * </p>
+ * 
  * @see FieldValue
  */
-public class PathValue {
-  private Map<String, FieldValue> fieldMap = new HashMap<>();
+public class PathValue implements Internable<PathValue> {
+  private static final Pool<PathValue> POOL = new Pool<>("PathValue");
+  private static final FieldValue[] NO_VALUES = new FieldValue[0];
+
+  private FieldLayout layout = FieldLayout.EMPTY;
+  private FieldValue[] values = NO_VALUES;
+  // 0 if not computed yet.
+  private int hashCode = 0;
+  private volatile boolean interned = false;
+
+  /**
+   * Creates an empty path value.
+   */
+  public PathValue() {
+  }
+
+  /**
+   * Creates a modifiable copy of a path value.
+   * 
+   * @param source The path value to copy.
+   */
+  public PathValue(PathValue source) {
+    this.layout = source.layout;
+    this.values = source.values.length == 0 ? NO_VALUES : source.values.clone();
+    this.hashCode = source.hashCode;
+  }
+
+  private PathValue(FieldLayout layout, FieldValue[] values) {
+    this.layout = layout;
+    this.values = values;
+  }
 
   /**
    * Adds a field value.
    * 
    * @param field The name of the field that should be added.
    * @param fieldValue The {@link FieldValue} to be added.
+   * @throws IllegalStateException if this path value has been interned.
    */
   public void addFieldEntry(String field, FieldValue fieldValue) {
-    this.fieldMap.put(field, fieldValue);
+    if (interned) {
+      throw new IllegalStateException("Interned path values cannot be modified");
+    }
+    hashCode = 0;
+    int index = layout.indexOf(field);
+    if (index >= 0) {
+      values[index] = fieldValue;
+      return;
+    }
+
+    FieldLayout newLayout = layout.with(field);
+    index = newLayout.indexOf(field);
+    FieldValue[] newValues = new FieldValue[values.length + 1];
+    System.arraycopy(values, 0, newValues, 0, index);
+    newValues[index] = fieldValue;
+    System.arraycopy(values, index, newValues, index + 1, values.length - index);
+    layout = newLayout;
+    values = newValues;
+  }
+
+  /**
+   * Returns the names of the fields of this value.
+   * 
+   * @return The field names, in sorted order.
+   */
+  public List<String> getFields() {
+    return layout.getFields();
   }
 
   /**
-   * Returns the mapping between field names and field values.
+   * Returns the mapping between field names and field values. This is a read-only view.
    * 
    * @return The mapping between field names and field values.
    */
   public Map<String, FieldValue> getFieldMap() {
-    return this.fieldMap;
+    return new FieldMapView();
   }
 
   /**
@@ -68,9 +135,9 @@ public class PathValue {
    * @return The value of the field if it was found, null otherwise.
    */
   public FieldValue getFieldValue(String field) {
-    return this.fieldMap.get(field);
+    int index = layout.indexOf(field);
+    return index < 0 ? null : values[index];
   }
-
   /**
    * Returns the value of a field converted to a specific set type.
    * 
@@ -80,7 +147,7 @@ public class PathValue {
    */
   @SuppressWarnings("unchecked")
   public <T> Set<T> getSetFieldValue(String field, Class<T> type) {
-    FieldValue fieldValue = this.fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     if (fieldValue == null || fieldValue == NullFieldValue.v()) {
       return null;
     }
@@ -116,7 +183,7 @@ public class PathValue {
    * @return True if there is a field by the name indicated that is not null.
    */
   public boolean containsNonNullFieldValue(String field) {
-    FieldValue fieldValue = fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     return fieldValue != null && fieldValue != NullFieldValue.v();
   }
 
@@ -129,7 +196,7 @@ public class PathValue {
    * @throws RuntimeException if the field is not a scalar of the specified type.
    */
   public <T> T getScalarFieldValue(String field, Class<T> type) {
-    FieldValue fieldValue = this.fieldMap.get(field);
+    FieldValue fieldValue = getFieldValue(field);
     if (fieldValue == null || fieldValue == NullFieldValue.v()) {
       return null;
     }
@@ -160,8 +227,8 @@ public class PathValue {
    * @return True if this object contains an IntermediateFieldValue.
    */
   public boolean containsIntermediateField() {
-    for (Map.Entry<String, FieldValue> entry : fieldMap.entrySet()) {
-      if (entry.getValue() instanceof IntermediateFieldValue) {
+    for (FieldValue value : values) {
+      if (value instanceof IntermediateFieldValue) {
         return true;
       }
     }
@@ -176,90 +243,74 @@ public class PathValue {
    * @return The objects without IntermediateFieldValue.
    */
   public Set<PathValue> makeFinalBranchValues(PropagationSolver solver) {
-    List<String> partialValueFields = new ArrayList<>();
-    Map<String, FieldValue> partialFieldMap = new HashMap<>();
-
-    for (Map.Entry<String, FieldValue> entry : fieldMap.entrySet()) {
-      FieldValue fieldValue = entry.getValue();
-      if (fieldValue instanceof IntermediateFieldValue) {
-        partialValueFields.add(entry.getKey());
-      } else {
-        partialFieldMap.put(entry.getKey(), fieldValue);
+    List<Integer> partialValueIndices = new ArrayList<>();
+    List<FieldValue[]> finalFieldValues = new ArrayList<>();
+    for (int i = 0; i < values.length; ++i) {
+      if (values[i] instanceof IntermediateFieldValue) {
+        Set<FieldValue> fieldValues =
+            ((IntermediateFieldValue) values[i]).makeFinalFieldValues(layout.getField(i), solver);
+        if (fieldValues.isEmpty()) {
+          return Collections.emptySet();
+        }
+        partialValueIndices.add(i);
+        finalFieldValues.add(fieldValues.toArray(new FieldValue[fieldValues.size()]));
       }
     }
 
-    Set<Map<String, FieldValue>> fieldMaps = Collections.singleton(partialFieldMap);
-
-    for (String partialValueField : partialValueFields) {
-      fieldMaps =
-          addFieldValuesToFieldMaps(fieldMaps, partialValueField,
-              ((IntermediateFieldValue) fieldMap.get(partialValueField)).makeFinalFieldValues(
-                  partialValueField, solver));
-    }
-
+    // Enumerates the combinations of final field values, the first field varying fastest.
     Set<PathValue> result = new HashSet<>();
-    for (Map<String, FieldValue> newFieldMap : fieldMaps) {
-      PathValue newBranchValue = new PathValue();
-      newBranchValue.fieldMap = newFieldMap;
-      result.add(newBranchValue);
-    }
-
-    return result;
-  }
-
-  /**
-   * Adds field values for a given field to a set of field maps.
-   * 
-   * @param fieldMaps A set of field maps.
-   * @param field A field name.
-   * @param fieldValues A set of field values associated with the field whose name is provided as an
-   *          argument.
-   * @return The resulting set of field maps.
-   */
-  private Set<Map<String, FieldValue>> addFieldValuesToFieldMaps(
-      Set<Map<String, FieldValue>> fieldMaps, String field, Set<FieldValue> fieldValues) {
-    Set<Map<String, FieldValue>> result = new HashSet<>();
+    int[] choices = new int[partialValueIndices.size()];
+    while (true) {
+      FieldValue[] newValues = values.clone();
+      boolean[] removed = null;
+      for (int i = 0; i < choices.length; ++i) {
+        int index = partialValueIndices.get(i);
+        FieldValue fieldValue = finalFieldValues.get(i)[choices[i]];
+        if (fieldValue == null) {
+          // A null final value means that the field is absent on that branch.
+          if (removed == null) {
+            removed = new boolean[values.length];
+          }
+          removed[index] = true;
+        }
+        newValues[index] = fieldValue;
+      }
+      result.add(removed == null ? new PathValue(layout, newValues).intern() : withoutFields(
+          newValues, removed).intern());
 
-    for (Map<String, FieldValue> fieldMap : fieldMaps) {
-      result.addAll(addFieldValuesToFieldMap(fieldMap, field, fieldValues));
+      int i = 0;
+      while (i < choices.length && ++choices[i] == finalFieldValues.get(i).length) {
+        choices[i++] = 0;
+      }
+      if (i == choices.length) {
+        break;
+      }
     }
 
     return result;
   }
 
-  /**
-   * Adds field values for a given field to a field map.
-   * 
-   * @param fieldMap A field map.
-   * @param field A field name.
-   * @param fieldValues A set of field values associated with the field whose name is provided as an
-   *          argument.
-   * @return The resulting set of field maps.
-   */
-  private Set<Map<String, FieldValue>> addFieldValuesToFieldMap(Map<String, FieldValue> fieldMap,
-      String field, Set<FieldValue> fieldValues) {
-    Set<Map<String, FieldValue>> result = new HashSet<>();
-
-    for (FieldValue fieldValue : fieldValues) {
-      Map<String, FieldValue> newFieldMap = new HashMap<>(fieldMap);
-      if (fieldValue != null) {
-        newFieldMap.put(field, fieldValue);
+  private PathValue withoutFields(FieldValue[] fieldValues, boolean[] removed) {
+    FieldLayout newLayout = layout.without(removed);
+    FieldValue[] newValues = new FieldValue[newLayout.size()];
+    int j = 0;
+    for (int i = 0; i < fieldValues.length; ++i) {
+      if (!removed[i]) {
+        newValues[j++] = fieldValues[i];
       }
-      result.add(newFieldMap);
     }
-
-    return result;
+    return new PathValue(newLayout, newValues);
   }
 
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
-    List<String> parts = new ArrayList<>(this.fieldMap.size());
+    List<String> parts = new ArrayList<>(values.length);
 
-    for (Map.Entry<String, FieldValue> entry : this.fieldMap.entrySet()) {
-      FieldValue value = entry.getValue();
+    for (int i = 0; i < values.length; ++i) {
+      FieldValue value = values[i];
       String valueString = value == null ? "null" : value.toString();
-      parts.add(entry.getKey() + "=" + valueString + ", ");
+      parts.add(layout.getField(i) + "=" + valueString + ", ");
     }
     Collections.sort(parts);
 
@@ -271,12 +322,96 @@ public class PathValue {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(this.fieldMap);
+    int result = hashCode;
+    if (result == 0) {
+      result = 31 * layout.hashCode() + Arrays.hashCode(values);
+      if (result == 0) {
+        result = 1;
+      }
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof PathValue
-        && Objects.equals(this.fieldMap, ((PathValue) other).fieldMap);
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PathValue)) {
+      return false;
+    }
+    PathValue otherPathValue = (PathValue) other;
+    return this.layout == otherPathValue.layout && hashCode() == otherPathValue.hashCode()
+        && Arrays.equals(this.values, otherPathValue.values);
+  }
+
+  /**
+   * Returns the canonical instance of this path value, which cannot be modified.
+   * 
+   * @return The interned path value.
+   */
+  @Override
+  public PathValue intern() {
+    PathValue result = POOL.intern(this);
+    result.interned = true;
+    return result;
+  }
+
+  /**
+   * Marks this path value as immutable, without interning it.
+   */
+  void freeze() {
+    interned = true;
+  }
+
+  private final class FieldMapView extends AbstractMap<String, FieldValue> {
+    @Override
+    public FieldValue get(Object key) {
+      return key instanceof String ? getFieldValue((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && layout.indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public Set<Map.Entry<String, FieldValue>> entrySet() {
+      return new AbstractSet<Map.Entry<String, FieldValue>>() {
+        @Override
+        public Iterator<Map.Entry<String, FieldValue>> iterator() {
+          return new Iterator<Map.Entry<String, FieldValue>>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+              return index < values.length;
+            }
+
+            @Override
+            public Map.Entry<String, FieldValue> next() {
+              if (index >= values.length) {
+                throw new NoSuchElementException();
+              }
+              Map.Entry<String, FieldValue> entry =
+                  new AbstractMap.SimpleImmutableEntry<>(layout.getField(index), values[index]);
+              ++index;
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return values.length;
+        }
+      };
+    }
   }
 }
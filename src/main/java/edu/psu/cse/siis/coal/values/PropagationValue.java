@@ -40,7 +40,7 @@ import edu.psu.cse.siis.coal.field.values.NullFieldValue;
  * A COAL propagation value, which is simply a collection of {@link PathValue} elements.
  */
 public class PropagationValue implements BasePropagationValue, Internable<PropagationValue> {
-  private static final Pool<PropagationValue> POOL = new Pool<>();
+  private static final Pool<PropagationValue> POOL = new Pool<>("PropagationValue");
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -79,7 +79,7 @@ public class PropagationValue implements BasePropagationValue, Internable<Propag
         FieldValue nullFieldValue = NullFieldValue.v();
         result.add(nullFieldValue);
       } else {
-        result.add(pathValue.getFieldMap().get(field));
+        result.add(pathValue.getFieldValue(field));
       }
     }
 
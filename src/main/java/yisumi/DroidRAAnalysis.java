@@ -5,9 +5,21 @@ import edu.psu.cse.siis.coal.DefaultAnalysis;
 
 public class DroidRAAnalysis<A  extends CommandLineArguments> extends DefaultAnalysis<A>
 {
+	@Override
+	protected void initSoot(A commandLineArguments)
+	{
+		//Reuse the Scene loaded by DroidRAUtils.loadSharedScene()
+		if (GlobalRef.singleScene && DroidRAContext.current().sceneLoaded)
+		{
+			return;
+		}
+		
+		super.initSoot(commandLineArguments);
+	}
+	
 	@Override
 	  protected void processResults(A commandLineArguments) {
-		DroidRAResultProcessor processor = new DroidRAResultProcessor();
+		DroidRAResultProcessor processor = new DroidRAResultProcessor(DroidRAContext.current());
 	    processor.processResult();
 	  }
 }
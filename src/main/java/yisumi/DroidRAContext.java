@@ -0,0 +1,69 @@
+package yisumi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soot.Body;
+import yisumi.model.StmtIndex;
+import yisumi.model.StmtKey;
+import yisumi.model.StmtValue;
+import yisumi.model.UniqStmt;
+import yisumi.model.ReflectionProfile.RClass;
+import yisumi.typeref.ArrayVarValue;
+import edu.psu.cse.siis.coal.AnalysisContext;
+
+/**
+ * The per-APK state of DroidRA, on top of the COAL state of the analysis context (model, results, Soot scene).
+ *
+ * GlobalRef only keeps the configuration, which is the same for all the APKs.
+ * Everything that is computed for an APK lives here, so that analyzing another APK
+ * (one after the other, e.g., BatchWorker, or concurrently) only takes a new context.
+ *
+ */
+public class DroidRAContext extends AnalysisContext
+{
+	public String apkPath;
+	public String pkgName;
+	public String apkVersionName;
+	public int apkVersionCode = -1;
+	public int apkMinSdkVersion;
+	public Set<String> apkPermissions;
+
+	public int missingUnit = 0;
+
+	//True once the APK has been loaded into the shared Scene (see DroidRAUtils.loadSharedScene)
+	public boolean sceneLoaded = false;
+
+	//Output directory of the Soot phases
+	public String workspace = GlobalRef.WORKSPACE;
+	//Name of the output files of the APK (results, metrics, report), the APK file name if null
+	public String apkId;
+
+	public Map<StmtKey, StmtValue> stmtKeyValues = new HashMap<StmtKey, StmtValue>();
+	public Map<UniqStmt, StmtValue> uniqStmtKeyValues = new HashMap<UniqStmt, StmtValue>();
+	public Map<String, RClass> rClasses = new HashMap<String, RClass>();
+	public Map<String, String> simpleStrs = new HashMap<String, String>();
+	//Filled by the array transform, which Soot may run on several bodies at the same time
+	public Map<UniqStmt, ArrayVarValue[]> arrayTypeRef = new ConcurrentHashMap<UniqStmt, ArrayVarValue[]>();
+	//Statement sequence numbers of the bodies of the scene, see StmtIndex
+	public Map<Body, StmtIndex> stmtIndexes = new ConcurrentHashMap<Body, StmtIndex>();
+	//Field and method names of the classes of the scene, see MemberNameIndex
+	public MemberNameIndex memberNameIndex;
+
+	/**
+	 * Returns the DroidRA context bound to the current thread (see AnalysisContext.enter()).
+	 *
+	 * @return the current DroidRA context
+	 */
+	public static DroidRAContext current()
+	{
+		AnalysisContext context = AnalysisContext.current();
+		if (! (context instanceof DroidRAContext))
+		{
+			throw new IllegalStateException("No DroidRA context is bound to the current thread");
+		}
+		return (DroidRAContext) context;
+	}
+}
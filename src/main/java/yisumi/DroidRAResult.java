@@ -1,10 +1,10 @@
 package yisumi;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import yisumi.model.StmtIndex;
 import yisumi.model.StmtKey;
 import yisumi.model.StmtType;
 import yisumi.model.StmtValue;
@@ -21,9 +21,6 @@ import edu.psu.cse.siis.coal.values.PropagationValue;
 
 
 public class DroidRAResult {
-    public static Map<StmtKey, StmtValue> stmtKeyValues = new HashMap<StmtKey, StmtValue>();
-    public static Map<UniqStmt, StmtValue> uniqStmtKeyValues = new HashMap<UniqStmt, StmtValue>();
-
     public static Map<StmtKey, StmtValue> toStmtKeyValues(Result result) {
         Map<StmtKey, StmtValue> stmtKeyValues = new HashMap<StmtKey, StmtValue>();
 
@@ -107,7 +104,7 @@ public class DroidRAResult {
                         }
                     } else {
                         //TODO: implementing later for directly parsing the str
-                        GlobalRef.missingUnit = GlobalRef.missingUnit + 1;
+                        DroidRAContext.current().missingUnit++;
                         // debug
                         flag = false;
                         ClassDescription clsDesc = new ClassDescription();
@@ -161,7 +158,7 @@ public class DroidRAResult {
     }
 
     public static Map<UniqStmt, StmtValue> toUniqStmtKeyValues(Map<StmtKey, StmtValue> stmtKeyValues) {
-        uniqStmtKeyValues = new HashMap<UniqStmt, StmtValue>();
+        Map<UniqStmt, StmtValue> uniqStmtKeyValues = new HashMap<UniqStmt, StmtValue>();
 
         for (Map.Entry<StmtKey, StmtValue> entry : stmtKeyValues.entrySet()) {
             StmtKey stmtKey = entry.getKey();
@@ -174,16 +171,7 @@ public class DroidRAResult {
             uniqStmt.stmt = stmtKey.getStmt().toString();
 
             Body body = stmtKey.getMethod().retrieveActiveBody();
-            int count = 0;
-            for (Iterator<Unit> iter = body.getUnits().snapshotIterator(); iter.hasNext(); ) {
-                Stmt stmt = (Stmt) iter.next();
-                count++;
-
-                if (stmt.toString().equals(stmtKey.getStmt().toString())) {
-                    uniqStmt.stmtSeq = count;
-                    break;
-                }
-            }
+            uniqStmt.stmtSeq = StmtIndex.v(body).getSeq(stmtKey.getStmt());
 
             uniqStmtKeyValues.put(uniqStmt, stmtValue);
         }
@@ -192,27 +180,13 @@ public class DroidRAResult {
     }
 
     public static Map<StmtKey, StmtValue> toStmtKeyValues(Map<UniqStmt, StmtValue> uniqStmtKeyValues) {
-        stmtKeyValues = new HashMap<StmtKey, StmtValue>();
+        Map<StmtKey, StmtValue> stmtKeyValues = new HashMap<StmtKey, StmtValue>();
 
         for (Map.Entry<UniqStmt, StmtValue> entry : uniqStmtKeyValues.entrySet()) {
             UniqStmt uniqStmt = entry.getKey();
             StmtValue stmtValue = entry.getValue();
 
-            StmtKey stmtKey = new StmtKey();
-            SootMethod sm = Scene.v().getMethod(uniqStmt.methodSignature);
-            stmtKey.setMethod(sm);
-
-            Body body = sm.retrieveActiveBody();
-            int count = 0;
-            for (Iterator<Unit> iter = body.getUnits().snapshotIterator(); iter.hasNext(); ) {
-                Stmt stmt = (Stmt) iter.next();
-                count++;
-
-                if (count == uniqStmt.stmtSeq) {
-                    stmtKey.setStmt(stmt);
-                    break;
-                }
-            }
+            StmtKey stmtKey = toStmtKey(uniqStmt);
 
             stmtKeyValues.put(stmtKey, stmtValue);
         }
@@ -226,25 +200,28 @@ public class DroidRAResult {
         for (Map.Entry<UniqStmt, StmtValue> entry : uniqStmtKeyValues.entrySet()) {
             UniqStmt uniqStmt = entry.getKey();
 
-            StmtKey stmtKey = new StmtKey();
-            SootMethod sm = Scene.v().getMethod(uniqStmt.methodSignature);
-            stmtKey.setMethod(sm);
-
-            Body body = sm.retrieveActiveBody();
-            int count = 0;
-            for (Iterator<Unit> iter = body.getUnits().snapshotIterator(); iter.hasNext(); ) {
-                Stmt stmt = (Stmt) iter.next();
-                count++;
-
-                if (count == uniqStmt.stmtSeq) {
-                    stmtKey.setStmt(stmt);
-                    break;
-                }
-            }
+            StmtKey stmtKey = toStmtKey(uniqStmt);
 
             keyPairs.put(uniqStmt, stmtKey);
         }
 
         return keyPairs;
     }
+
+    /**
+     * Resolves a UniqStmt against the current Scene.
+     *
+     * @param uniqStmt
+     * @return the StmtKey of the statement, whose stmt is null if the method has no such statement
+     */
+    public static StmtKey toStmtKey(UniqStmt uniqStmt) {
+        StmtKey stmtKey = new StmtKey();
+        SootMethod sm = Scene.v().getMethod(uniqStmt.methodSignature);
+        stmtKey.setMethod(sm);
+
+        Body body = sm.retrieveActiveBody();
+        stmtKey.setStmt(StmtIndex.v(body).getStmt(uniqStmt.stmtSeq));
+
+        return stmtKey;
+    }
 }
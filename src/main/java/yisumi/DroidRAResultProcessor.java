@@ -1,5 +1,4 @@
 package yisumi;
-import java.util.List;
 
 import edu.psu.cse.siis.coal.DefaultResultProcessor;
 import edu.psu.cse.siis.coal.Result;
@@ -8,17 +7,20 @@ import edu.psu.cse.siis.coal.Results;
 
 public class DroidRAResultProcessor extends DefaultResultProcessor
 {
-	public static List<Result> results = null;
+	private final DroidRAContext context;
+	
+	public DroidRAResultProcessor(DroidRAContext context)
+	{
+		this.context = context;
+	}
 	
 	public void processResult() 
 	{
-		results = Results.getResults();
-		
 		for (Result result : Results.getResults()) 
 		{
-			DroidRAResult.stmtKeyValues.putAll(DroidRAResult.toStmtKeyValues(result));
+			context.stmtKeyValues.putAll(DroidRAResult.toStmtKeyValues(result));
 			
-			GlobalRef.uniqStmtKeyValues = DroidRAResult.toUniqStmtKeyValues(DroidRAResult.stmtKeyValues);
+			context.uniqStmtKeyValues = DroidRAResult.toUniqStmtKeyValues(context.stmtKeyValues);
 		}
 	}
 }
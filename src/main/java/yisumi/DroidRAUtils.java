@@ -1,7 +1,16 @@
 package yisumi;
 
+import java.io.File;
+import java.util.Collections;
+
 //import yisumi.retarget.RetargetWithDummyMainGenerator;
+import yisumi.typeref.ArrayVarItemTypeRef;
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
 import soot.jimple.infoflow.android.manifest.ProcessManifest;
+import soot.options.Options;
+import edu.psu.cse.siis.coal.ModelCompiler;
 
 public class DroidRAUtils 
 {
@@ -16,17 +25,18 @@ public class DroidRAUtils
 	
 	public static void extractApkInfo(String apkPath)
 	{
-		GlobalRef.apkPath = apkPath;
+		DroidRAContext context = DroidRAContext.current();
+		context.apkPath = apkPath;
 		
 		try 
 		{
 			ProcessManifest manifest = new ProcessManifest(apkPath);
 			
-			GlobalRef.pkgName = manifest.getPackageName();
-			GlobalRef.apkVersionCode = manifest.getVersionCode();
-			GlobalRef.apkVersionName = manifest.getVersionName();
-			GlobalRef.apkMinSdkVersion = manifest.getMinSdkVersion();
-			GlobalRef.apkPermissions = manifest.getPermissions();
+			context.pkgName = manifest.getPackageName();
+			context.apkVersionCode = manifest.getVersionCode();
+			context.apkVersionName = manifest.getVersionName();
+			context.apkMinSdkVersion = manifest.getMinSdkVersion();
+			context.apkPermissions = manifest.getPermissions();
 		} 
 		catch (Exception e) 
 		{
@@ -34,7 +44,98 @@ public class DroidRAUtils
 		}
 	}
 	
+	/**
+	 * Resets Soot and configures it to load the current APK (DroidRAContext.apkPath).
+	 * All the phases (array type inference, COAL, booster) share this configuration, 
+	 * only the output directory and format differ.
+	 * 
+	 * @param outputDir
+	 * @param outputFormat one of the Options.output_format_* constants
+	 */
+	public static void initSoot(String outputDir, int outputFormat)
+	{
+		G.reset();
+		Options.v().set_src_prec(Options.src_prec_apk);
+		Options.v().set_full_resolver(true);
+		Options.v().set_drop_bodies_after_load(false);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().ignore_resolution_errors();
+		Options.v().set_no_writeout_body_releasing(true);
+		Options.v().set_output_dir(outputDir);
+		Options.v().set_output_format(outputFormat);
+		Options.v().set_whole_program(true);
+		Options.v().set_process_multiple_dex(true);
+		Options.v().set_android_jars(GlobalRef.android_jar);
+		Options.v().set_process_dir(Collections.singletonList(DroidRAContext.current().apkPath));
+		Options.v().set_prepend_classpath(true);
+		Options.v().set_keep_line_number(true);
+		Options.v().set_app(true);
+		Options.v().set_include_all(true);
+	}
+	
+	/**
+	 * Loads the APK into Soot once for the whole pipeline (GlobalRef.singleScene).
+	 * 
+	 * The array type inference is registered as a jtp transform, so that it runs on the same 
+	 * Jimple bodies as COAL, which then reuses this Scene instead of reloading the APK. 
+	 * The booster later instruments and writes out the very same Scene (see ApkBooster).
+	 * 
+	 * Only the body packs run: COAL builds its own call graph with FlowDroid (see DefaultAnalysis), 
+	 * so Soot's whole-program packs (cg, wjtp, ...) would only build a call graph that is thrown away. 
+	 */
+	public static void loadSharedScene()
+	{
+		DroidRAContext context = DroidRAContext.current();
+		initSoot(context.workspace, Options.output_format_none);
+		
+		Scene.v().loadNecessaryClasses();
+		Scene.v().loadDynamicClasses();
+		
+		PackManager.v().getPack("jtp").add(ArrayVarItemTypeRef.newTransform());
+		PackManager.v().runBodyPacks();
+		
+		context.sceneLoaded = true;
+	}
 	
+	/**
+	 * Returns the compiled version of the COAL model (GlobalRef.coalModelPath), which COAL loads in a few milliseconds
+	 * instead of parsing the model again for every APK. The model is compiled (see ModelCompiler) if the compiled file 
+	 * is missing or older than the model.
+	 * 
+	 * @return the path of the compiled model, or null if the model could not be compiled
+	 */
+	public static String compiledCoalModel()
+	{
+		File compiledModel = new File(GlobalRef.coalCompiledModelPath);
+		
+		long lastModified = 0;
+		for (String modelPath : GlobalRef.coalModelPath.split(File.pathSeparator))
+		{
+			File model = new File(modelPath);
+			File[] files = model.isDirectory() ? model.listFiles() : new File[] { model };
+			for (File file : files)
+			{
+				lastModified = Math.max(lastModified, file.lastModified());
+			}
+		}
+		
+		if (compiledModel.exists() && compiledModel.lastModified() >= lastModified)
+		{
+			return compiledModel.getPath();
+		}
+		
+		try 
+		{
+			ModelCompiler.compileModel(GlobalRef.coalModelPath, compiledModel.getPath());
+			return compiledModel.getPath();
+		} 
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
 	
 	//public static Map<String, List<ArrayVar>> method2arrayVars = new HashMap<String, List<ArrayVar>>();
 	/*
@@ -1,39 +1,52 @@
 package yisumi;
 
-import java.util.Map;
-import java.util.Set;
-
-import yisumi.model.StmtKey;
-import yisumi.model.StmtValue;
-import yisumi.model.UniqStmt;
-import yisumi.model.ReflectionProfile.RClass;
-import yisumi.typeref.ArrayVarValue;
-
+/**
+ * The configuration of DroidRA, shared by all the APKs. 
+ * The state of the APK being analyzed is in DroidRAContext.
+ */
 public class GlobalRef 
 {
-	public static String apkPath;
-	public static String pkgName;
-	public static String apkVersionName;
-	public static int apkVersionCode = -1;
-	public static int apkMinSdkVersion;
-	public static Set<String> apkPermissions;
-	
 	public static String clsPath;
-	public static int missingUnit = 0;
+	
+	//Load the APK into Soot only once and share the Scene between the array type inference, 
+	//COAL and the booster (see DroidRAUtils.loadSharedScene). 
+	//If false, each phase reloads the APK from scratch.
+	public static boolean singleScene = true;
+	
+	//Number of IDE solver threads for COAL, all the cores if null
+	public static String threadCount;
+	
+	//Call graph algorithm of COAL (cha, rta, vta, spark or auto), COAL's default (cha) if null
+	public static String callGraphAlgorithm;
+	
+	//Maximum number of nested class parameter summaries of a COAL query, COAL's default (16) if null
+	public static String summaryDepth;
+	
+	//Widening policies of COAL, e.g., "java.lang.String=64:eager,default=256", COAL's default if null
+	public static String wideningPolicies;
+	
+	//Collect the string constraints of the app methods before the propagation, on demand if false
+	public static boolean eagerConstraints = false;
+	
+	//Part of the result cache key, to be changed whenever the analysis results may change
+	public static final String VERSION = "1.0-SNAPSHOT";
+	//Directory of the result cache (see ResultCache), no caching if null
+	public static String cacheDir;
 	
 	//Configuration files
+	//Default output directory of the Soot phases, overridden per APK in batch mode (see DroidRAContext.workspace)
 	public static final String WORKSPACE = "workspace";
 	public static String fieldCallsConfigPath = "res/FieldCalls.txt";
 	//public static String coalModelPath = "res/reflection.model";
 	public static String coalModelPath = "res/reflection_simple.model";
+	//Directory of the compiled models, kept across runs. 
+	//It must not be a workspace, the booster empties the workspace of every APK.
+	public static final String MODEL_CACHE = "model_cache";
+	//Compiled coalModelPath, rebuilt when the model changes (see DroidRAUtils.compiledCoalModel)
+	public static String coalCompiledModelPath = MODEL_CACHE + "/reflection_simple.cmodel";
 	public static String rfModelPath = "res/reflection.model";
 	public static String dclModelPath = "res/dynamic_code_loading.model";
 	
-	public static Map<UniqStmt, StmtValue> uniqStmtKeyValues;
-	public static Map<String, RClass> rClasses;
-	public static Map<UniqStmt, ArrayVarValue[]> arrayTypeRef;
-	public static Map<UniqStmt, StmtKey> keyPairs;
-	
 	
 	public static final String jsonFile = "refl.json";
     public static String android_jar;
@@ -1,18 +1,16 @@
 package yisumi;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import yisumi.model.StmtKey;
 import yisumi.model.StmtType;
 import yisumi.model.StmtValue;
-import soot.Scene;
-import soot.SootClass;
-import soot.SootField;
-import soot.SootMethod;
 
 public class HeuristicUnknownValueInfer 
 {
@@ -36,7 +34,7 @@ public class HeuristicUnknownValueInfer
 	
 	/**
 	 * Since we may get a list of class names (through Class.forName), 
-	 * this method traverse these methods to guess an unknown class name, giving a field/method name.
+	 * this method looks up these classes to guess an unknown class name, giving a field/method name.
 	 * 
 	 * Problem: If the class is not in the current classpath, then there is no way to infer through this way.
 	 * For example, reflection calls are used because of hiden class/methods.
@@ -47,6 +45,7 @@ public class HeuristicUnknownValueInfer
 	public Map<StmtKey, StmtValue> inferThroughKnownClassNames(Map<StmtKey, StmtValue> stmtKeyValues)
 	{
 		Map<StmtKey, StmtValue> newStmtKeyValues = new HashMap<StmtKey, StmtValue>();
+		MemberNameIndex index = MemberNameIndex.v();
 		
 		Set<String> possibleClsNames = new HashSet<String>();
 		
@@ -100,79 +99,30 @@ public class HeuristicUnknownValueInfer
 					case FIELD_CALL:
 						String fieldName = clsDesc.name;
 
-						for (String possibleClsName : possibleClsNames)
+						for (String possibleClsName : intersect(possibleClsNames, index.getFieldClasses(fieldName)))
 						{
-							try
-							{
-								SootClass sc = Scene.v().getSootClass(possibleClsName);
-								if (null == sc)
-								{
-									continue;
-								}
-								
-								try
-								{
-									SootField sf = sc.getFieldByNameUnsafe(fieldName);
-									if (null == sf)
-									{
-										continue;
-									}
-									
-									//Class ``possibleClsName" contains a field called ``fieldName"
-									oldSet.add(clsDesc);
-									
-									ClassDescription cd = new ClassDescription();
-									cd.cls = possibleClsName;
-									cd.name = fieldName;
-									newSet.add(cd);
-								}
-								catch (Exception ex) { }
-							}
-							catch (Exception ex)
-							{
-								//There is no that clss in the Scene
-							}
+							//Class ``possibleClsName" contains a field called ``fieldName"
+							oldSet.add(clsDesc);
 							
+							ClassDescription cd = new ClassDescription();
+							cd.cls = possibleClsName;
+							cd.name = fieldName;
+							newSet.add(cd);
 						}
-							
 						
 						break;
 					case METHOD_CALL:
 						String methodName = clsDesc.name;
 
-						for (String possibleClsName : possibleClsNames)
+						for (String possibleClsName : intersect(possibleClsNames, index.getMethodClasses(methodName)))
 						{
-							try
-							{
-								SootClass sc = Scene.v().getSootClass(possibleClsName);
-								if (null == sc)
-								{
-									continue;
-								}
-								
-								try
-								{
-									SootMethod sm = sc.getMethodByNameUnsafe(methodName);
-									if (null == sm)
-									{
-										continue;
-									}
-									
-									//Class ``possibleClsName" contains a field called ``fieldName"
-									oldSet.add(clsDesc);
-									
-									ClassDescription cd = new ClassDescription();
-									cd.cls = possibleClsName;
-									cd.name = methodName;
-									newSet.add(cd);
-								}
-								catch (Exception ex) { }
-							}
-							catch (Exception ex)
-							{
-								//There is no that clss in the Scene
-							}
+							//Class ``possibleClsName" contains a method called ``methodName"
+							oldSet.add(clsDesc);
 							
+							ClassDescription cd = new ClassDescription();
+							cd.cls = possibleClsName;
+							cd.name = methodName;
+							newSet.add(cd);
 						}
 						
 						break;
@@ -194,7 +144,7 @@ public class HeuristicUnknownValueInfer
 	
 	/**
 	 * Only infer the className through its possible field/method name.
-	 * This method traverses all classes in the current classpath.
+	 * The candidate classes of a name are all the classes of the current classpath declaring it (see MemberNameIndex).
 	 * 
 	 * Again, if the target class is not in the current classpath, this method will fail to infer the class name.
 	 * 
@@ -204,6 +154,7 @@ public class HeuristicUnknownValueInfer
 	public Map<StmtKey, StmtValue> inferThroughAllClasses(Map<StmtKey, StmtValue> stmtKeyValues)
 	{
 		Map<StmtKey, StmtValue> newStmtKeyValues = new HashMap<StmtKey, StmtValue>();
+		MemberNameIndex index = MemberNameIndex.v();
 		
 		Map<String, Set<String>> nameToClasses = new HashMap<String, Set<String>>();
 		
@@ -222,73 +173,25 @@ public class HeuristicUnknownValueInfer
 					switch (value.getType())
 					{
 					case FIELD_CALL:
-						String fieldName = clsDesc.name;
-
-						for (Iterator<SootClass> iter = Scene.v().getClasses().snapshotIterator(); iter.hasNext(); )
+						Set<String> fieldClses = index.getFieldClasses(clsDesc.name);
+						
+						//To differentiate field name and method name
+						String fieldName = "F:" + clsDesc.name;
+						
+						if (! fieldClses.isEmpty() && ! nameToClasses.containsKey(fieldName))
 						{
-							SootClass sc = iter.next();
-							
-							try
-							{
-								SootField sf = sc.getFieldByNameUnsafe(fieldName);
-								if (null == sf)
-								{
-									continue;
-								}
-							}
-							catch (Exception ex) { }
-							
-							//To differentiate field name and method name
-							fieldName = "F:" + fieldName;
-							
-							Set<String> clses = null;
-							if (nameToClasses.containsKey(fieldName))
-							{
-								clses = nameToClasses.get(fieldName);
-							}
-							else
-							{
-								clses = new HashSet<String>();
-							}
-							
-							clses.add(sc.getName());
-							
-							nameToClasses.put(fieldName, clses);
+							nameToClasses.put(fieldName, new HashSet<String>(fieldClses));
 						}
 						
 						break;
 					case METHOD_CALL:
-						String methodName = clsDesc.name;
-
-						for (Iterator<SootClass> iter = Scene.v().getClasses().snapshotIterator(); iter.hasNext(); )
+						Set<String> methodClses = index.getMethodClasses(clsDesc.name);
+						
+						String methodName = "M:" + clsDesc.name;
+						
+						if (! methodClses.isEmpty() && ! nameToClasses.containsKey(methodName))
 						{
-							SootClass sc = iter.next();
-							
-							try
-							{
-								SootMethod sm = sc.getMethodByNameUnsafe(methodName);
-								if (null == sm)
-								{
-									continue;
-								}
-							}
-							catch (Exception ex) { }
-							
-							methodName = "M:" + methodName;
-							
-							Set<String> clses = null;
-							if (nameToClasses.containsKey(methodName))
-							{
-								clses = nameToClasses.get(methodName);
-							}
-							else
-							{
-								clses = new HashSet<String>();
-							}
-							
-							clses.add(sc.getName());
-							
-							nameToClasses.put(methodName, clses);
+							nameToClasses.put(methodName, new HashSet<String>(methodClses));
 						}
 						
 						break;
@@ -301,16 +204,7 @@ public class HeuristicUnknownValueInfer
 		
 		
 		//(2) infer value
-		Map<String, String> nameToClassMap = new HashMap<String, String>();
-		while (nameToClasses.size() > 0)
-		{
-			Map<String, String> tmpMap = valueInfer(nameToClasses);
-			nameToClassMap.putAll(tmpMap);
-			for (String key : tmpMap.keySet())
-			{
-				nameToClasses.remove(key);
-			}
-		}
+		Map<String, String> nameToClassMap = valueInfer(nameToClasses);
 		
 		
 		//(3) write inferred value back
@@ -376,62 +270,118 @@ public class HeuristicUnknownValueInfer
 	}
 	
 	
-	public Map<String, String> valueInfer(Map<String, Set<String>> nameToClasses)
+	/**
+	 * @return the elements of both sets, iterating over the smaller one
+	 */
+	private static Set<String> intersect(Set<String> set1, Set<String> set2)
 	{
-		Set<String> potentialClses = new HashSet<String>();
-		for (Set<String> set : nameToClasses.values())
+		if (set1.size() > set2.size())
 		{
-			potentialClses.addAll(set);
+			Set<String> tmp = set1;
+			set1 = set2;
+			set2 = tmp;
 		}
 		
-		String[] allClses = potentialClses.toArray(new String[] {});
-		
-		int[] value = new int[allClses.length];
-		
-		for (String key : nameToClasses.keySet())
+		Set<String> result = new HashSet<String>();
+		for (String str : set1)
 		{
-			int[] tmp = new int[allClses.length];
-			
-			for (int i = 0; i < allClses.length; i++)
+			if (set2.contains(str))
 			{
-				if (nameToClasses.get(key).contains(allClses[i]))
-				{
-					tmp[i] = 1;
-				}
+				result.add(str);
 			}
-			
-			for (int i = 0; i < value.length; i++)
+		}
+		return result;
+	}
+	
+	/**
+	 * Greedy set cover: the class that declares the most names is picked first, all its names are assigned to it,
+	 * and so on with the remaining names until all of them are assigned.
+	 * Ties are broken by class name, so that the result does not depend on the iteration order of the sets.
+	 * 
+	 * The scores of the classes are kept in a priority queue, and only the scores of the classes 
+	 * sharing a name with the picked class are updated after each pick.
+	 * 
+	 * @param nameToClasses the candidate classes of each name
+	 * @return the inferred class of each name
+	 */
+	public Map<String, String> valueInfer(Map<String, Set<String>> nameToClasses)
+	{
+		Map<String, List<String>> classToNames = new HashMap<String, List<String>>();
+		for (Map.Entry<String, Set<String>> entry : nameToClasses.entrySet())
+		{
+			for (String cls : entry.getValue())
 			{
-				value[i] = value[i] + tmp[i];
+				List<String> names = classToNames.get(cls);
+				if (null == names)
+				{
+					names = new ArrayList<String>();
+					classToNames.put(cls, names);
+				}
+				names.add(entry.getKey());
 			}
 		}
 		
-		int maxValue = -1;
-		int maxSeq = 0;
-		for (int i = 0; i < value.length; i++)
+		//Number of unassigned names of each class
+		Map<String, Integer> scores = new HashMap<String, Integer>();
+		PriorityQueue<ClassScore> queue = new PriorityQueue<ClassScore>();
+		for (Map.Entry<String, List<String>> entry : classToNames.entrySet())
 		{
-			if (maxValue < value[i])
-			{
-				maxValue = value[i];
-				maxSeq = i;
-			}	
+			scores.put(entry.getKey(), entry.getValue().size());
+			queue.add(new ClassScore(entry.getKey(), entry.getValue().size()));
 		}
 		
-		//System.out.println("The max value is " + maxValue);
-		//System.out.println("The max seq is " + maxSeq);
-		
 		Map<String, String> nameToClassMap = new HashMap<String, String>();
-		for (String key : nameToClasses.keySet())
+		while (! queue.isEmpty())
 		{
-			if (nameToClasses.get(key).contains(allClses[maxSeq]))
+			ClassScore top = queue.poll();
+			if (top.score != scores.get(top.cls) || 0 == top.score)
 			{
-				nameToClassMap.put(key, allClses[maxSeq]);
+				//Outdated entry, the class has been pushed again with its new score
+				continue;
+			}
+			
+			for (String name : classToNames.get(top.cls))
+			{
+				if (nameToClassMap.containsKey(name))
+				{
+					continue;
+				}
+				nameToClassMap.put(name, top.cls);
+				
+				for (String cls : nameToClasses.get(name))
+				{
+					int score = scores.get(cls) - 1;
+					scores.put(cls, score);
+					if (score > 0 && ! cls.equals(top.cls))
+					{
+						queue.add(new ClassScore(cls, score));
+					}
+				}
 			}
 		}
 		
 		return nameToClassMap;
 	}
 	
-	
-	
+	private static class ClassScore implements Comparable<ClassScore>
+	{
+		final String cls;
+		final int score;
+		
+		ClassScore(String cls, int score)
+		{
+			this.cls = cls;
+			this.score = score;
+		}
+		
+		@Override
+		public int compareTo(ClassScore other) 
+		{
+			if (score != other.score)
+			{
+				return score > other.score ? -1 : 1;
+			}
+			return cls.compareTo(other.cls);
+		}
+	}
 }
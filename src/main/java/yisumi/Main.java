@@ -7,6 +7,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -65,9 +66,6 @@ public class Main
 
 	public static void main(String[] args) 
 	{
-		long startTime = System.currentTimeMillis();
-		System.out.println("==>TIME:" + startTime);
-
 		String apkPath = "/Users/einstein_bohr/AndroidStudioProjects/buttonTest/app/release/app-release.apk";
 		String forceAndroidJar = "/Users/einstein_bohr/Library/Android/sdk/platforms/android-28/android.jar";
 		GlobalRef.android_jar = "/Users/einstein_bohr/Library/Android/sdk/platforms/";
@@ -80,36 +78,177 @@ public class Main
 			GlobalRef.android_jar = args[2];
 		}
 		
+		parseOptions(args, 3);
+		
+		analyzeApk(apkPath, forceAndroidJar);
+	}
+	
+	/**
+	 * Parses the optional flags, starting at args[start].
+	 * 
+	 * @param args
+	 * @param start
+	 */
+	public static void parseOptions(String[] args, int start)
+	{
+		for (int i = start; i < args.length; i++)
+		{
+			if ("-reloadscene".equals(args[i]))
+			{
+				GlobalRef.singleScene = false;
+			}
+			else if ("-eagerconstraints".equals(args[i]))
+			{
+				GlobalRef.eagerConstraints = true;
+			}
+			else if ("-threadcount".equals(args[i]) && i + 1 < args.length)
+			{
+				GlobalRef.threadCount = args[++i];
+			}
+			else if ("-callgraph".equals(args[i]) && i + 1 < args.length)
+			{
+				GlobalRef.callGraphAlgorithm = args[++i];
+			}
+			else if ("-summarydepth".equals(args[i]) && i + 1 < args.length)
+			{
+				GlobalRef.summaryDepth = args[++i];
+			}
+			else if ("-widening".equals(args[i]) && i + 1 < args.length)
+			{
+				GlobalRef.wideningPolicies = args[++i];
+			}
+			else if ("-cachedir".equals(args[i]) && i + 1 < args.length)
+			{
+				GlobalRef.cacheDir = args[++i];
+			}
+		}
+	}
+	
+	/**
+	 * Runs the whole pipeline (COAL, report, booster) on one APK, in a new DroidRAContext.
+	 * 
+	 * @param apkPath
+	 * @param forceAndroidJar
+	 */
+	public static void analyzeApk(String apkPath, String forceAndroidJar)
+	{
+		analyzeApk(new DroidRAContext(), apkPath, forceAndroidJar);
+	}
+	
+	/**
+	 * Runs the whole pipeline (COAL, report, booster) on one APK. 
+	 * All the state of the analysis is kept in the given context, which is released afterwards.
+	 * 
+	 * @param context
+	 * @param apkPath
+	 * @param forceAndroidJar
+	 */
+	public static void analyzeApk(DroidRAContext context, String apkPath, String forceAndroidJar)
+	{
+		AnalysisContext previous = context.enter();
+		try
+		{
+			runPipeline(context, apkPath, forceAndroidJar);
+		}
+		finally
+		{
+			context.exit(previous);
+			context.close();
+		}
+	}
+	
+	@SuppressWarnings("try")
+	private static void runPipeline(DroidRAContext context, String apkPath, String forceAndroidJar)
+	{
+		AnalysisMetrics metrics = AnalysisMetrics.v();
+		
 		String apkName = apkPath;
-		if (apkName.contains("/"))
+		if (null != context.apkId)
+		{
+			apkName = context.apkId;
+		}
+		else if (apkName.contains("/"))
 		{
 			apkName = apkName.substring(apkName.lastIndexOf('/')+1);
 		}
 		
-		if (! new File(GlobalRef.WORKSPACE).exists())
+		if (! new File(context.workspace).exists())
 		{
-			File workspace = new File(GlobalRef.WORKSPACE);
+			File workspace = new File(context.workspace);
 			workspace.mkdirs();
 		}
 		
-		init(apkPath, forceAndroidJar);
-		
-		long afterDummyMain = System.currentTimeMillis();
-		System.out.println("==>TIME:" + afterDummyMain);
-		
-		reflectionAnalysis();
-		toReadableText(apkName);
-		toJson(apkName);
-		
-		long afterRA = System.currentTimeMillis();
-		System.out.println("==>TIME:" + afterRA);
-		
-		booster();
-		
-		long afterBooster = System.currentTimeMillis();
-		System.out.println("==>TIME:" + afterBooster);
-		
-		System.out.println("====>TIME_TOTAL:" + startTime + "," + afterDummyMain + "," + afterRA + "," + afterBooster);
+		try
+		{
+			try (AnalysisMetrics.Phase phase = metrics.startPhase("apkInfo"))
+			{
+				init(apkPath, forceAndroidJar);
+			}
+			
+			ResultCache resultCache = null;
+			if (null != GlobalRef.cacheDir)
+			{
+				try 
+				{
+					resultCache = new ResultCache(GlobalRef.cacheDir, apkPath, GlobalRef.coalModelPath);
+				} 
+				catch (IOException e) 
+				{
+					e.printStackTrace();
+				}
+			}
+			
+			if (null != resultCache && resultCache.load(reportFileName(apkName)))
+			{
+				System.out.println("Reusing cached results for " + apkPath);
+				metrics.setCounter("cacheHit", 1);
+				toJson(apkName);
+			}
+			else
+			{
+				reflectionAnalysis(context);
+				try (AnalysisMetrics.Phase phase = metrics.startPhase("report"))
+				{
+					toReadableText(apkName);
+					toJson(apkName);
+				}
+				
+				if (null != resultCache)
+				{
+					resultCache.store(reportFileName(apkName));
+				}
+			}
+			
+			try (AnalysisMetrics.Phase phase = metrics.startPhase("booster"))
+			{
+				booster(context);
+			}
+		}
+		finally
+		{
+			//Also written for failed APKs, to see how far they went
+			metrics.setCounter("reflectiveCalls", context.uniqStmtKeyValues.size());
+			metrics.setCounter("missingUnits", context.missingUnit);
+			writeMetrics(metrics, metricsFileName(apkName));
+		}
+	}
+	
+	public static String metricsFileName(String apkName)
+	{
+		return apkName + ".metrics.json";
+	}
+	
+	private static void writeMetrics(AnalysisMetrics metrics, String metricsPath)
+	{
+		try
+		{
+			metrics.writeJson(new File(metricsPath));
+			System.out.println("Metrics written to " + metricsPath);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
 	}
 	
 	public static int test()
@@ -123,19 +262,65 @@ public class Main
 		GlobalRef.clsPath = forceAndroidJar;
 	}
 	
-	public static void reflectionAnalysis()
+	@SuppressWarnings("try")
+	public static void reflectionAnalysis(DroidRAContext context)
 	{
 		
-		String[] args = {
+		String compiledModel = DroidRAUtils.compiledCoalModel();
+		List<String> coalArgs = new ArrayList<String>(Arrays.asList(
 			"-cp", GlobalRef.clsPath,
-			"-model", GlobalRef.coalModelPath,
+			null != compiledModel ? "-cmodel" : "-model", null != compiledModel ? compiledModel : GlobalRef.coalModelPath,
 //			"-model", GlobalRef.rfModelPath,
-			"-input", GlobalRef.WORKSPACE
-		};
+			"-input", context.workspace,
+			"-apk", context.apkPath,
+			"-sootout", context.workspace
+		));
+		
+		// COAL uses all the cores by default, -threadcount 1..N is used to measure the scaling.
+		if (null != GlobalRef.threadCount)
+		{
+			coalArgs.add("-threadcount");
+			coalArgs.add(GlobalRef.threadCount);
+		}
+		
+		if (null != GlobalRef.callGraphAlgorithm)
+		{
+			coalArgs.add("-callgraph");
+			coalArgs.add(GlobalRef.callGraphAlgorithm);
+		}
+		
+		if (null != GlobalRef.summaryDepth)
+		{
+			coalArgs.add("-summarydepth");
+			coalArgs.add(GlobalRef.summaryDepth);
+		}
+		
+		if (null != GlobalRef.wideningPolicies)
+		{
+			coalArgs.add("-widening");
+			coalArgs.add(GlobalRef.wideningPolicies);
+		}
+		
+		if (GlobalRef.eagerConstraints)
+		{
+			coalArgs.add("-eagerconstraints");
+		}
+		
+		String[] args = coalArgs.toArray(new String[coalArgs.size()]);
 
 		// identify all array, and model it.
-		ArrayVarItemTypeRef.setup(GlobalRef.apkPath, GlobalRef.clsPath);
-		GlobalRef.arrayTypeRef = ArrayVarItemTypeRef.arrayTypeRef;
+		try (AnalysisMetrics.Phase phase = AnalysisMetrics.v().startPhase("sceneLoad"))
+		{
+			if (GlobalRef.singleScene)
+			{
+				// load the apk once, the array pass runs on the bodies that COAL and the booster reuse.
+				DroidRAUtils.loadSharedScene();
+			}
+			else
+			{
+				ArrayVarItemTypeRef.setup(context.apkPath, GlobalRef.clsPath);
+			}
+		}
 
 		// run reflection detection.
 		DroidRAAnalysis<DefaultCommandLineArguments> analysis = new DroidRAAnalysis<>();
@@ -145,21 +330,29 @@ public class Main
 		if (commandLineArguments != null) 
 		{
 			AndroidMethodReturnValueAnalyses.registerAndroidMethodReturnValueAnalyses("");
-			analysis.performAnalysis(commandLineArguments);
+			analysis.performAnalysis(context, commandLineArguments);
 		}
 		
-		GlobalRef.uniqStmtKeyValues = DroidRAResult.toUniqStmtKeyValues(HeuristicUnknownValueInfer.getInstance().infer(DroidRAResult.stmtKeyValues));
+		try (AnalysisMetrics.Phase phase = AnalysisMetrics.v().startPhase("heuristicInference"))
+		{
+			context.uniqStmtKeyValues = DroidRAResult.toUniqStmtKeyValues(HeuristicUnknownValueInfer.getInstance().infer(context.stmtKeyValues));
+		}
 		
-		ReflectionProfile.fillReflectionProfile(DroidRAResult.stmtKeyValues);
-		GlobalRef.rClasses = ReflectionProfile.rClasses;
+		ReflectionProfile.fillReflectionProfile(context.stmtKeyValues);
 		ReflectionProfile.dump();
 		ReflectionProfile.dump("==>0:");
-		System.out.println("====> missing Unit: " + GlobalRef.missingUnit);
+		System.out.println("====> missing Unit: " + context.missingUnit);
+	}
+	
+	public static void booster(DroidRAContext context)
+	{
+		ApkBooster.apkBooster(context, context.apkPath, GlobalRef.clsPath, context.workspace);
 	}
 	
-	public static void booster()
+	public static String reportFileName(String apkName)
 	{
-		ApkBooster.apkBooster(GlobalRef.apkPath, GlobalRef.clsPath, GlobalRef.WORKSPACE);
+		DroidRAContext context = DroidRAContext.current();
+		return "droidra_" + apkName + "_" + context.pkgName + "_v" + context.apkVersionCode + ".txt";
 	}
 	
 	public static void toReadableText(String apkName)
@@ -168,11 +361,11 @@ public class Main
 		{
 			PrintStream systemPrintStream = System.out;
 					
-			PrintStream fileStream = new PrintStream(new File("droidra_" + apkName + "_" + GlobalRef.pkgName + "_v" + GlobalRef.apkVersionCode + ".txt"));
+			PrintStream fileStream = new PrintStream(new File(reportFileName(apkName)));
 			System.setOut(fileStream);
 			
 			System.out.println("The following values were found:");
-		    for (Result result : DroidRAResultProcessor.results) 
+		    for (Result result : Results.getResults()) 
 		    {
 		    	((DefaultResult) result).dump();
 		    }
@@ -225,7 +418,7 @@ public class Main
 		Gson gson = new Gson();
 		
 		ReflectionExchangable re = new ReflectionExchangable();
-		re.set(GlobalRef.uniqStmtKeyValues);
+		re.set(DroidRAContext.current().uniqStmtKeyValues);
 		
 		try 
 		{
@@ -0,0 +1,165 @@
+package yisumi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import edu.psu.cse.siis.coal.AnalysisContext;
+import edu.psu.cse.siis.coal.AnalysisParameters;
+
+/**
+ * Inverted index from field and method names to the names of the classes of the Scene that declare them.
+ *
+ * It replaces the getFieldByNameUnsafe/getMethodByNameUnsafe scans over all the classes of the Scene
+ * that HeuristicUnknownValueInfer used to do for every unknown class.
+ * The index is built in parallel, once per DroidRAContext, and rebuilt if classes have been added to the Scene since.
+ *
+ */
+public class MemberNameIndex
+{
+	private final int classCount;
+	private final ConcurrentHashMap<String, Set<String>> fieldToClasses = new ConcurrentHashMap<String, Set<String>>();
+	private final ConcurrentHashMap<String, Set<String>> methodToClasses = new ConcurrentHashMap<String, Set<String>>();
+
+	private MemberNameIndex(List<SootClass> classes)
+	{
+		this.classCount = classes.size();
+	}
+
+	/**
+	 * Returns the index of the Scene of the current context.
+	 *
+	 * @return the member name index
+	 */
+	public static MemberNameIndex v()
+	{
+		DroidRAContext context = DroidRAContext.current();
+		MemberNameIndex index = context.memberNameIndex;
+		if (null == index || index.classCount != Scene.v().getClasses().size())
+		{
+			index = build();
+			context.memberNameIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @param fieldName
+	 * @return the names of the classes declaring a field called fieldName
+	 */
+	public Set<String> getFieldClasses(String fieldName)
+	{
+		return get(fieldToClasses, fieldName);
+	}
+
+	/**
+	 * @param methodName
+	 * @return the names of the classes declaring at least one method called methodName
+	 */
+	public Set<String> getMethodClasses(String methodName)
+	{
+		return get(methodToClasses, methodName);
+	}
+
+	private static Set<String> get(Map<String, Set<String>> nameToClasses, String name)
+	{
+		if (null == name)
+		{
+			return Collections.emptySet();
+		}
+		Set<String> classes = nameToClasses.get(name);
+		return null == classes ? Collections.<String>emptySet() : Collections.unmodifiableSet(classes);
+	}
+
+	private static MemberNameIndex build()
+	{
+		final List<SootClass> classes = new ArrayList<SootClass>(Scene.v().getClasses());
+		final MemberNameIndex index = new MemberNameIndex(classes);
+
+		int threadCount = AnalysisParameters.v().getThreadCount();
+		if (threadCount <= 0)
+		{
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+		if (1 == threadCount)
+		{
+			for (SootClass sc : classes)
+			{
+				index.add(sc);
+			}
+			return index;
+		}
+
+		//Pool threads do not inherit the context, which is needed to query the Scene
+		final AnalysisContext context = AnalysisContext.current();
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try
+		{
+			pool.submit(() -> classes.parallelStream().forEach(sc -> {
+				AnalysisContext previous = context.enter();
+				try
+				{
+					index.add(sc);
+				}
+				finally
+				{
+					context.exit(previous);
+				}
+			})).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while indexing member names", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Could not index member names", e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		return index;
+	}
+
+	private void add(SootClass sc)
+	{
+		String clsName = sc.getName();
+		try
+		{
+			for (SootField sf : sc.getFields())
+			{
+				put(fieldToClasses, sf.getName(), clsName);
+			}
+			for (SootMethod sm : sc.getMethods())
+			{
+				put(methodToClasses, sm.getName(), clsName);
+			}
+		}
+		catch (RuntimeException ex)
+		{
+			//The class has not been resolved to the signature level, its members are unknown
+		}
+	}
+
+	private static void put(ConcurrentHashMap<String, Set<String>> nameToClasses, String name, String clsName)
+	{
+		Set<String> classes = nameToClasses.get(name);
+		if (null == classes)
+		{
+			classes = nameToClasses.computeIfAbsent(name, k -> ConcurrentHashMap.<String>newKeySet());
+		}
+		classes.add(clsName);
+	}
+}
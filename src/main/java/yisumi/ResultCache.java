@@ -0,0 +1,217 @@
+package yisumi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import yisumi.model.ReflectionExchangable;
+import yisumi.model.ReflectionProfile.RClass;
+import yisumi.model.UniqStmt;
+import yisumi.typeref.ArrayVarValue;
+
+import com.google.gson.Gson;
+
+/**
+ * Content-addressed store of the reflection analysis results.
+ *
+ * An entry is keyed by the SHA-256 digests of the APK and of the COAL model, and by the tool version,
+ * so that re-analyzing an APK we have already seen can skip FlowDroid and COAL, and go straight to
+ * the report and the booster.
+ *
+ * Each entry is a directory named after the key, holding the results (result.json) and the readable report (report.txt).
+ * Files are written to a temporary file first and then renamed, so that concurrent runs never see a partial entry.
+ */
+public class ResultCache
+{
+	private static final String RESULT_FILE = "result.json";
+	private static final String REPORT_FILE = "report.txt";
+
+	private final File entryDir;
+
+	/**
+	 * What is stored for an APK: everything the booster and the JSON export need.
+	 */
+	static class Entry
+	{
+		String version;
+		ReflectionExchangable results;
+		Map<String, RClass> rClasses;
+		List<ArrayTypeRefItem> arrayTypeRefs;
+	}
+
+	static class ArrayTypeRefItem
+	{
+		UniqStmt uniqStmt;
+		ArrayVarValue[] values;
+	}
+
+	public ResultCache(String cacheDir, String apkPath, String modelPath) throws IOException
+	{
+		String key = digest(new File(apkPath)) + "_" + digest(new File(modelPath)) + "_" + GlobalRef.VERSION;
+		if (null != GlobalRef.callGraphAlgorithm)
+		{
+			//The results depend on the precision of the call graph
+			key += "_" + GlobalRef.callGraphAlgorithm.toLowerCase();
+		}
+		this.entryDir = new File(cacheDir, key);
+	}
+
+	/**
+	 * Restores the results of a previous analysis of the same APK into the current DroidRAContext,
+	 * and copies the readable report to reportPath.
+	 *
+	 * @param reportPath
+	 * @return true if the cache contained the results, false if the APK should be analyzed
+	 */
+	public boolean load(String reportPath)
+	{
+		File resultFile = new File(entryDir, RESULT_FILE);
+		if (! resultFile.exists())
+		{
+			return false;
+		}
+
+		try (Reader reader = Files.newBufferedReader(resultFile.toPath(), StandardCharsets.UTF_8))
+		{
+			Entry entry = new Gson().fromJson(reader, Entry.class);
+			if (null == entry || ! GlobalRef.VERSION.equals(entry.version))
+			{
+				return false;
+			}
+
+			Map<UniqStmt, ArrayVarValue[]> arrayTypeRef = new HashMap<UniqStmt, ArrayVarValue[]>();
+			for (ArrayTypeRefItem item : entry.arrayTypeRefs)
+			{
+				arrayTypeRef.put(item.uniqStmt, item.values);
+			}
+
+			File reportFile = new File(entryDir, REPORT_FILE);
+			if (reportFile.exists())
+			{
+				Files.copy(reportFile.toPath(), new File(reportPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			DroidRAContext context = DroidRAContext.current();
+			context.uniqStmtKeyValues = entry.results.get();
+			context.rClasses = entry.rClasses;
+			context.arrayTypeRef = arrayTypeRef;
+
+			return true;
+		}
+		catch (Exception e)
+		{
+			// A corrupted entry is a miss, the analysis overwrites it.
+			System.out.println("Could not read cached results from " + resultFile + ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the results of the current analysis (DroidRAContext) and the readable report.
+	 *
+	 * @param reportPath
+	 */
+	public void store(String reportPath)
+	{
+		DroidRAContext context = DroidRAContext.current();
+		Entry entry = new Entry();
+		entry.version = GlobalRef.VERSION;
+		entry.results = new ReflectionExchangable();
+		entry.results.set(context.uniqStmtKeyValues);
+		entry.rClasses = context.rClasses;
+		entry.arrayTypeRefs = new ArrayList<ArrayTypeRefItem>();
+		for (Map.Entry<UniqStmt, ArrayVarValue[]> arrayEntry : context.arrayTypeRef.entrySet())
+		{
+			ArrayTypeRefItem item = new ArrayTypeRefItem();
+			item.uniqStmt = arrayEntry.getKey();
+			item.values = arrayEntry.getValue();
+			entry.arrayTypeRefs.add(item);
+		}
+
+		try
+		{
+			entryDir.mkdirs();
+
+			File report = new File(reportPath);
+			if (report.exists())
+			{
+				File tmpReport = File.createTempFile(REPORT_FILE, ".tmp", entryDir);
+				Files.copy(report.toPath(), tmpReport.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tmpReport.toPath(), new File(entryDir, REPORT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			// The result file is written last: its presence marks a complete entry.
+			File tmpResult = File.createTempFile(RESULT_FILE, ".tmp", entryDir);
+			try (Writer writer = Files.newBufferedWriter(tmpResult.toPath(), StandardCharsets.UTF_8))
+			{
+				new Gson().toJson(entry, writer);
+			}
+			Files.move(tmpResult.toPath(), new File(entryDir, RESULT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private static String digest(File file) throws IOException
+	{
+		MessageDigest md;
+		try
+		{
+			md = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException(e);
+		}
+
+		update(md, file);
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest())
+		{
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	//A model can also be a directory of model files
+	private static void update(MessageDigest md, File file) throws IOException
+	{
+		if (file.isDirectory())
+		{
+			File[] children = file.listFiles();
+			Arrays.sort(children);
+			for (File child : children)
+			{
+				md.update(child.getName().getBytes(StandardCharsets.UTF_8));
+				update(md, child);
+			}
+			return;
+		}
+
+		try (InputStream in = new FileInputStream(file))
+		{
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				md.update(buffer, 0, read);
+			}
+		}
+	}
+}
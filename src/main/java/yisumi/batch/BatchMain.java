@@ -0,0 +1,381 @@
+package yisumi.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Analyzes a batch of APKs with a bounded pool of worker JVMs (see BatchWorker).
+ *
+ * Each worker analyzes APKs one after the other, so the JVM start-up is paid once per worker.
+ * Each worker runs with its own heap cap (-xmx), and an APK that takes longer than the timeout
+ * has its worker killed and replaced. A worker that dies (e.g., out of memory) is replaced as well,
+ * so one bad APK only costs its own result.
+ *
+ * All the results are appended to a single JSON-lines file, one line per APK, holding its id
+ * (see BatchWorker.apkId), the status, the duration, the ReflectionExchangable results and
+ * the metrics (phase timers, counters, heap) of the APK.
+ *
+ * Usage: BatchMain apk-dir|apk-list-file android.jar android-platforms-dir
+ *            [-workers N] [-timeout seconds] [-xmx heap] [-output file] [-workspace dir]
+ *            [Main options]
+ *
+ */
+public class BatchMain
+{
+	public static final String STATUS_TIMEOUT = "TIMEOUT";
+	public static final String STATUS_CRASHED = "CRASHED";
+
+	//Queued by the reader thread when the worker stdout is closed
+	private static final String WORKER_EXITED = "";
+
+	private final List<String> workerCommand;
+	private final long timeoutSeconds;
+	private final File logDir;
+	private final Writer sink;
+	private final Gson gson = new Gson();
+	private final Map<String, Integer> statusCounts = new TreeMap<String, Integer>();
+
+	public BatchMain(List<String> workerCommand, long timeoutSeconds, File logDir, Writer sink)
+	{
+		this.workerCommand = workerCommand;
+		this.timeoutSeconds = timeoutSeconds;
+		this.logDir = logDir;
+		this.sink = sink;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.out.println("Usage: BatchMain apk-dir|apk-list-file android.jar android-platforms-dir "
+					+ "[-workers N] [-timeout seconds] [-xmx heap] [-output file] [-workspace dir] [Main options]");
+			return;
+		}
+
+		int workers = Runtime.getRuntime().availableProcessors();
+		long timeoutSeconds = 3600;
+		String xmx = null;
+		String output = "droidra_batch_results.jsonl";
+		String workspaceRoot = "workspace_batch";
+		List<String> mainOptions = new ArrayList<String>();
+
+		for (int i = 3; i < args.length; i++)
+		{
+			if ("-workers".equals(args[i]) && i + 1 < args.length)
+			{
+				workers = Integer.parseInt(args[++i]);
+			}
+			else if ("-timeout".equals(args[i]) && i + 1 < args.length)
+			{
+				timeoutSeconds = Long.parseLong(args[++i]);
+			}
+			else if ("-xmx".equals(args[i]) && i + 1 < args.length)
+			{
+				xmx = args[++i];
+			}
+			else if ("-output".equals(args[i]) && i + 1 < args.length)
+			{
+				output = args[++i];
+			}
+			else if ("-workspace".equals(args[i]) && i + 1 < args.length)
+			{
+				workspaceRoot = args[++i];
+			}
+			else
+			{
+				mainOptions.add(args[i]);
+			}
+		}
+
+		List<String> apks = listApks(new File(args[0]));
+		System.out.println("Analyzing " + apks.size() + " APKs with " + workers + " workers");
+
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		if (null != xmx)
+		{
+			command.add("-Xmx" + xmx);
+		}
+		//Let the driver replace the worker instead of running on with a broken heap
+		command.add("-XX:+ExitOnOutOfMemoryError");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BatchWorker.class.getName());
+		command.add(args[1]);
+		command.add(args[2]);
+		command.add(workspaceRoot);
+		command.addAll(mainOptions);
+
+		File logDir = new File(workspaceRoot, "logs");
+		logDir.mkdirs();
+
+		try (Writer sink = new BufferedWriter(new FileWriter(output, true)))
+		{
+			BatchMain batch = new BatchMain(command, timeoutSeconds, logDir, sink);
+			batch.run(apks, workers);
+			System.out.println("Done: " + batch.statusCounts + ", results in " + output);
+		}
+	}
+
+	/**
+	 * Lists the APKs of a directory (recursively), or of a file with one APK path per line.
+	 *
+	 * @param input
+	 * @return the APK paths
+	 * @throws IOException
+	 */
+	public static List<String> listApks(File input) throws IOException
+	{
+		if (input.isDirectory())
+		{
+			try (Stream<Path> paths = Files.walk(input.toPath()))
+			{
+				return paths.filter(path -> path.toString().endsWith(".apk"))
+						.map(Path::toString)
+						.sorted()
+						.collect(Collectors.toList());
+			}
+		}
+
+		List<String> apks = new ArrayList<String>();
+		for (String line : Files.readAllLines(input.toPath(), StandardCharsets.UTF_8))
+		{
+			line = line.trim();
+			if (! line.isEmpty() && ! line.startsWith("#"))
+			{
+				apks.add(line);
+			}
+		}
+		return apks;
+	}
+
+	public void run(List<String> apks, int workers) throws InterruptedException
+	{
+		Queue<String> pending = new ConcurrentLinkedQueue<String>(apks);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < Math.max(1, workers); i++)
+		{
+			final WorkerSlot slot = new WorkerSlot(i);
+			Thread thread = new Thread(() -> slot.run(pending), "droidra-batch-" + i);
+			thread.start();
+			threads.add(thread);
+		}
+
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+	}
+
+	/**
+	 * Drives one worker JVM, starting a new one whenever the previous one was killed or died.
+	 */
+	private class WorkerSlot
+	{
+		private final int id;
+		private Process process;
+		private Writer processInput;
+		private BlockingQueue<String> results;
+
+		WorkerSlot(int id)
+		{
+			this.id = id;
+		}
+
+		void run(Queue<String> pending)
+		{
+			String apkPath;
+			while ((apkPath = pending.poll()) != null)
+			{
+				try
+				{
+					analyze(apkPath);
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+					record(apkPath, BatchWorker.apkId(apkPath), STATUS_CRASHED, 0, null, null);
+					stopWorker();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			stopWorker();
+		}
+
+		private void analyze(String apkPath) throws IOException, InterruptedException
+		{
+			if (null == process)
+			{
+				startWorker();
+			}
+
+			long start = System.currentTimeMillis();
+			processInput.write(apkPath + "\n");
+			processInput.flush();
+
+			String line = results.poll(timeoutSeconds, TimeUnit.SECONDS);
+			long millis = System.currentTimeMillis() - start;
+			if (null == line)
+			{
+				record(apkPath, BatchWorker.apkId(apkPath), STATUS_TIMEOUT, millis, null, null);
+				process.destroyForcibly().waitFor();
+				process = null;
+			}
+			else if (WORKER_EXITED.equals(line))
+			{
+				process.waitFor();
+				System.out.println("Worker " + id + " exited with code " + process.exitValue() + " on " + apkPath);
+				record(apkPath, BatchWorker.apkId(apkPath), STATUS_CRASHED, millis, null, null);
+				process = null;
+			}
+			else
+			{
+				//RESULT_PREFIX status millis apkPath apkId jsonPath metricsPath
+				String[] fields = line.split("\t");
+				record(apkPath, fields[4], fields[1], Long.parseLong(fields[2]), fields[5], fields[6]);
+			}
+		}
+
+		private void startWorker() throws IOException
+		{
+			ProcessBuilder builder = new ProcessBuilder(workerCommand);
+			builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(logDir, "worker-" + id + ".log")));
+			process = builder.start();
+			processInput = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+			final BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+			results = queue;
+			Thread readerThread = new Thread(() -> {
+				try
+				{
+					String line;
+					while ((line = reader.readLine()) != null)
+					{
+						if (line.startsWith(BatchWorker.RESULT_PREFIX))
+						{
+							queue.add(line);
+						}
+					}
+				}
+				catch (IOException e)
+				{
+					//The worker was killed
+				}
+				queue.add(WORKER_EXITED);
+			}, "droidra-batch-reader-" + id);
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
+
+		private void stopWorker()
+		{
+			if (null == process)
+			{
+				return;
+			}
+
+			try
+			{
+				processInput.close();
+				if (! process.waitFor(10, TimeUnit.SECONDS))
+				{
+					process.destroyForcibly();
+				}
+			}
+			catch (IOException e)
+			{
+				process.destroyForcibly();
+			}
+			catch (InterruptedException e)
+			{
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+			process = null;
+		}
+	}
+
+	private void record(String apkPath, String apkId, String status, long millis, String jsonPath, String metricsPath)
+	{
+		JsonObject line = new JsonObject();
+		line.addProperty("apk", apkPath);
+		line.addProperty("id", apkId);
+		line.addProperty("status", status);
+		line.addProperty("millis", millis);
+
+		if (BatchWorker.STATUS_OK.equals(status))
+		{
+			addJsonFile(line, "results", jsonPath, apkPath);
+		}
+		//Failed APKs have metrics up to the phase that failed
+		addJsonFile(line, "metrics", metricsPath, apkPath);
+
+		synchronized (this)
+		{
+			try
+			{
+				sink.write(gson.toJson(line));
+				sink.write("\n");
+				sink.flush();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+
+			Integer count = statusCounts.get(status);
+			statusCounts.put(status, null == count ? 1 : count + 1);
+		}
+
+		System.out.println(status + " " + apkPath + " (" + millis + " ms)");
+	}
+
+	private void addJsonFile(JsonObject line, String property, String path, String apkPath)
+	{
+		if (null == path || ! new File(path).exists())
+		{
+			return;
+		}
+
+		try (Reader reader = new FileReader(path))
+		{
+			line.add(property, new JsonParser().parse(reader));
+		}
+		catch (Exception e)
+		{
+			System.out.println("Could not read the " + property + " of " + apkPath + ": " + e);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package yisumi.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import yisumi.DroidRAContext;
+import yisumi.GlobalRef;
+import yisumi.Main;
+
+/**
+ * A long-lived worker JVM started by BatchMain.
+ *
+ * It reads APK paths from stdin, one per line, and analyzes them one after the other,
+ * each in a fresh DroidRAContext, so that the JVM start-up is paid once per worker
+ * and not once per APK.
+ *
+ * For each APK, one line "RESULT_PREFIX status millis apkPath apkId jsonPath metricsPath"
+ * (tab separated) is written to stdout. Everything else the analysis prints goes to stderr.
+ *
+ * The outputs of an APK (results, metrics, report and workspace) are named after its id
+ * (see apkId), so that APKs with the same file name in different directories do not
+ * overwrite each other.
+ *
+ * Usage: BatchWorker android.jar android-platforms-dir workspace-root [Main options]
+ *
+ */
+public class BatchWorker
+{
+	public static final String RESULT_PREFIX = "##DROIDRA_BATCH_RESULT##";
+	public static final String STATUS_OK = "OK";
+	public static final String STATUS_FAILED = "FAILED";
+
+	public static void main(String[] args) throws IOException
+	{
+		PrintStream protocol = System.out;
+		System.setOut(System.err);
+
+		String forceAndroidJar = args[0];
+		GlobalRef.android_jar = args[1];
+		String workspaceRoot = args[2];
+		Main.parseOptions(args, 3);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+		String apkPath;
+		while ((apkPath = reader.readLine()) != null)
+		{
+			apkPath = apkPath.trim();
+			if (apkPath.isEmpty())
+			{
+				continue;
+			}
+
+			String apkId = apkId(apkPath);
+			String jsonPath = new File(apkId + ".json").getAbsolutePath();
+			String metricsPath = new File(Main.metricsFileName(apkId)).getAbsolutePath();
+			//Never report the metrics of a previous run of the same APK
+			new File(metricsPath).delete();
+
+			String status = STATUS_OK;
+			long start = System.currentTimeMillis();
+
+			try
+			{
+				DroidRAContext context = new DroidRAContext();
+				context.apkId = apkId;
+				//Each APK gets its own Soot output directories (e.g., for the boosted APK)
+				context.workspace = new File(workspaceRoot, apkId).getPath();
+
+				Main.analyzeApk(context, apkPath, forceAndroidJar);
+			}
+			catch (Exception | StackOverflowError e)
+			{
+				e.printStackTrace();
+				status = STATUS_FAILED;
+			}
+
+			long millis = System.currentTimeMillis() - start;
+			protocol.println(RESULT_PREFIX + "\t" + status + "\t" + millis + "\t" + apkPath + "\t" + apkId + "\t" + jsonPath + "\t" + metricsPath);
+			protocol.flush();
+		}
+	}
+
+	/**
+	 * Returns the id of an APK: its file name followed by a digest of its absolute path,
+	 * e.g., base.apk-3f2a9c01d4e7. Two APKs get the same id only if they are the same file.
+	 *
+	 * @param apkPath
+	 * @return the id of the APK
+	 */
+	public static String apkId(String apkPath)
+	{
+		File apk = new File(apkPath).getAbsoluteFile();
+		String path = apk.toPath().normalize().toString();
+		try
+		{
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] digest = md.digest(path.getBytes(StandardCharsets.UTF_8));
+			StringBuilder id = new StringBuilder(apk.getName()).append('-');
+			for (int i = 0; i < 6; i++)
+			{
+				id.append(String.format("%02x", digest[i]));
+			}
+			return id.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package yisumi.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Measures how the analysis scales with the number of COAL solver threads (-threadcount)
+ * on a fixed corpus of APKs.
+ *
+ * For each thread count, one BatchWorker JVM is started with "-threadcount N" and analyzes
+ * the whole corpus (optionally after a warm-up APK, which is not measured), as many times as asked.
+ * Each thread count gets its own JVM, so the JIT and the Soot state of a run do not carry over
+ * to the next thread count.
+ *
+ * For each APK and run, the wall time of the whole pipeline and the time of the COAL "iteration"
+ * phase (i.e., the propagation solver, the part that runs on several threads) are written to
+ * a CSV file. The summary (median time of the corpus per thread count, speedup and efficiency
+ * relative to the first thread count) is printed and written to a second CSV file.
+ *
+ * Do not pass -cachedir: cached results would skip the analysis.
+ *
+ * Usage: ScalingBenchmark apk-dir|apk-list-file android.jar android-platforms-dir
+ *            [-threads 1,2,4,...] [-repeat N] [-warmup] [-xmx heap] [-output file]
+ *            [-workspace dir] [Main options]
+ *
+ */
+public class ScalingBenchmark
+{
+	public static final String ITERATION_PHASE = "iteration";
+
+	private final List<String> workerCommand;
+	private final File logDir;
+	private final int repeat;
+	private final boolean warmup;
+
+	public ScalingBenchmark(List<String> workerCommand, File logDir, int repeat, boolean warmup)
+	{
+		this.workerCommand = workerCommand;
+		this.logDir = logDir;
+		this.repeat = repeat;
+		this.warmup = warmup;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.out.println("Usage: ScalingBenchmark apk-dir|apk-list-file android.jar android-platforms-dir "
+					+ "[-threads 1,2,4,...] [-repeat N] [-warmup] [-xmx heap] [-output file] [-workspace dir] [Main options]");
+			return;
+		}
+
+		List<Integer> threadCounts = defaultThreadCounts(Runtime.getRuntime().availableProcessors());
+		int repeat = 3;
+		boolean warmup = false;
+		String xmx = null;
+		String output = "droidra_scaling.csv";
+		String workspaceRoot = "workspace_scaling";
+		List<String> mainOptions = new ArrayList<String>();
+
+		for (int i = 3; i < args.length; i++)
+		{
+			if ("-threads".equals(args[i]) && i + 1 < args.length)
+			{
+				threadCounts = new ArrayList<Integer>();
+				for (String threads : args[++i].split(","))
+				{
+					threadCounts.add(Integer.parseInt(threads.trim()));
+				}
+			}
+			else if ("-repeat".equals(args[i]) && i + 1 < args.length)
+			{
+				repeat = Math.max(1, Integer.parseInt(args[++i]));
+			}
+			else if ("-warmup".equals(args[i]))
+			{
+				warmup = true;
+			}
+			else if ("-xmx".equals(args[i]) && i + 1 < args.length)
+			{
+				xmx = args[++i];
+			}
+			else if ("-output".equals(args[i]) && i + 1 < args.length)
+			{
+				output = args[++i];
+			}
+			else if ("-workspace".equals(args[i]) && i + 1 < args.length)
+			{
+				workspaceRoot = args[++i];
+			}
+			else if ("-cachedir".equals(args[i]) || "-threadcount".equals(args[i]))
+			{
+				System.out.println("Ignoring " + args[i] + " " + (i + 1 < args.length ? args[++i] : "") + ": it would bias the benchmark");
+			}
+			else
+			{
+				mainOptions.add(args[i]);
+			}
+		}
+
+		List<String> apks = BatchMain.listApks(new File(args[0]));
+		System.out.println("Benchmarking " + apks.size() + " APKs with " + threadCounts + " threads, " + repeat + " runs each");
+
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		if (null != xmx)
+		{
+			command.add("-Xmx" + xmx);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(BatchWorker.class.getName());
+		command.add(args[1]);
+		command.add(args[2]);
+		command.add(workspaceRoot);
+		command.addAll(mainOptions);
+
+		File logDir = new File(workspaceRoot, "logs");
+		logDir.mkdirs();
+
+		ScalingBenchmark benchmark = new ScalingBenchmark(command, logDir, repeat, warmup);
+		List<Summary> summaries = new ArrayList<Summary>();
+		try (PrintWriter runs = new PrintWriter(new BufferedWriter(new FileWriter(output))))
+		{
+			runs.println("threads,run,apk,id,status,millis,iterationMillis");
+			for (int threads : threadCounts)
+			{
+				summaries.add(benchmark.run(apks, threads, runs));
+			}
+		}
+
+		String summaryOutput = output.endsWith(".csv") ? output.substring(0, output.length() - 4) + ".summary.csv" : output + ".summary.csv";
+		try (PrintWriter summary = new PrintWriter(new BufferedWriter(new FileWriter(summaryOutput))))
+		{
+			summary.println("threads,analyzed,failed,medianMillis,medianIterationMillis,speedup,iterationSpeedup,efficiency");
+			System.out.println(String.format("%8s %8s %6s %12s %12s %8s %8s %10s",
+					"threads", "analyzed", "failed", "millis", "iteration", "speedup", "iter.sp.", "efficiency"));
+
+			Summary base = summaries.get(0);
+			for (Summary s : summaries)
+			{
+				double speedup = ratio(base.medianMillis, s.medianMillis);
+				double iterationSpeedup = ratio(base.medianIterationMillis, s.medianIterationMillis);
+				double efficiency = speedup * base.threads / s.threads;
+				summary.println(s.threads + "," + s.analyzed + "," + s.failed + "," + s.medianMillis + "," + s.medianIterationMillis
+						+ "," + String.format("%.3f,%.3f,%.3f", speedup, iterationSpeedup, efficiency));
+				System.out.println(String.format("%8d %8d %6d %12d %12d %8.2f %8.2f %10.2f",
+						s.threads, s.analyzed, s.failed, s.medianMillis, s.medianIterationMillis, speedup, iterationSpeedup, efficiency));
+			}
+		}
+		System.out.println("Runs in " + output + ", summary in " + summaryOutput);
+	}
+
+	/**
+	 * Returns 1, 2, 4, ... up to (and including) the given number of threads.
+	 *
+	 * @param maxThreads
+	 * @return the thread counts
+	 */
+	public static List<Integer> defaultThreadCounts(int maxThreads)
+	{
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (int threads = 1; threads < maxThreads; threads *= 2)
+		{
+			threadCounts.add(threads);
+		}
+		threadCounts.add(Math.max(1, maxThreads));
+		return threadCounts;
+	}
+
+	/**
+	 * Analyzes the corpus repeat times in one BatchWorker JVM running the solver
+	 * with the given number of threads.
+	 *
+	 * @param apks
+	 * @param threads
+	 * @param runs where each measured APK is written
+	 * @return the summary of the thread count
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Summary run(List<String> apks, int threads, PrintWriter runs) throws IOException, InterruptedException
+	{
+		List<String> command = new ArrayList<String>(workerCommand);
+		command.add("-threadcount");
+		command.add(String.valueOf(threads));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(logDir, "threads-" + threads + ".log")));
+		Process process = builder.start();
+
+		Summary summary = new Summary(threads);
+		List<Long> corpusMillis = new ArrayList<Long>();
+		List<Long> corpusIterationMillis = new ArrayList<Long>();
+
+		try (Writer input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+			BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+		{
+			if (warmup && ! apks.isEmpty())
+			{
+				System.out.println("Warming up " + threads + " threads on " + apks.get(0));
+				if (null == analyze(input, output, apks.get(0)))
+				{
+					return summary;
+				}
+			}
+
+			for (int run = 1; run <= repeat; run++)
+			{
+				long millis = 0;
+				long iterationMillis = 0;
+				boolean complete = true;
+				for (String apkPath : apks)
+				{
+					String[] fields = analyze(input, output, apkPath);
+					if (null == fields)
+					{
+						//The worker died, the remaining runs of this thread count are not comparable
+						System.out.println("Worker with " + threads + " threads exited on " + apkPath);
+						summary.failed++;
+						return summary;
+					}
+
+					//RESULT_PREFIX status millis apkPath apkId jsonPath metricsPath
+					long apkMillis = Long.parseLong(fields[2]);
+					long apkIterationMillis = phaseMillis(fields[6], ITERATION_PHASE);
+					runs.println(threads + "," + run + "," + csv(apkPath) + "," + csv(fields[4]) + "," + fields[1] + "," + apkMillis + "," + apkIterationMillis);
+					runs.flush();
+					System.out.println(threads + " threads, run " + run + ": " + fields[1] + " " + apkPath + " (" + apkMillis + " ms)");
+
+					if (BatchWorker.STATUS_OK.equals(fields[1]))
+					{
+						summary.analyzed++;
+						millis += apkMillis;
+						//APKs without reflective calls may not reach the iteration phase
+						iterationMillis += Math.max(0, apkIterationMillis);
+					}
+					else
+					{
+						summary.failed++;
+						complete = false;
+					}
+				}
+
+				//A run where some APK failed did less work, it is not comparable with the other thread counts
+				if (complete)
+				{
+					corpusMillis.add(millis);
+					corpusIterationMillis.add(iterationMillis);
+				}
+			}
+		}
+		finally
+		{
+			if (! process.waitFor(10, TimeUnit.SECONDS))
+			{
+				process.destroyForcibly();
+			}
+			summary.medianMillis = median(corpusMillis);
+			summary.medianIterationMillis = median(corpusIterationMillis);
+		}
+
+		return summary;
+	}
+
+	private String[] analyze(Writer input, BufferedReader output, String apkPath) throws IOException
+	{
+		input.write(apkPath + "\n");
+		input.flush();
+
+		String line;
+		while ((line = output.readLine()) != null)
+		{
+			if (line.startsWith(BatchWorker.RESULT_PREFIX))
+			{
+				return line.split("\t");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the total time of a phase in a metrics file written by Main, or -1 if it is missing.
+	 *
+	 * @param metricsPath
+	 * @param phaseName
+	 * @return the time of the phase in milliseconds
+	 */
+	public static long phaseMillis(String metricsPath, String phaseName)
+	{
+		if (null == metricsPath || ! new File(metricsPath).exists())
+		{
+			return -1;
+		}
+
+		try (Reader reader = new FileReader(metricsPath))
+		{
+			JsonObject phases = new JsonParser().parse(reader).getAsJsonObject().getAsJsonObject("phases");
+			JsonElement phase = null == phases ? null : phases.get(phaseName);
+			return null == phase ? -1 : phase.getAsJsonObject().get("totalMillis").getAsLong();
+		}
+		catch (Exception e)
+		{
+			System.out.println("Could not read the metrics " + metricsPath + ": " + e);
+			return -1;
+		}
+	}
+
+	private static long median(List<Long> values)
+	{
+		if (values.isEmpty())
+		{
+			return -1;
+		}
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	private static double ratio(long base, long value)
+	{
+		return base <= 0 || value <= 0 ? Double.NaN : (double) base / value;
+	}
+
+	private static String csv(String value)
+	{
+		return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+	}
+
+	/**
+	 * The results of one thread count: the number of analyzed and failed APKs over all the runs,
+	 * and the median time of the whole corpus (and of its iteration phases) over the runs
+	 * where every APK was analyzed (-1 if there is none).
+	 */
+	public static class Summary
+	{
+		public final int threads;
+		public int analyzed;
+		public int failed;
+		public long medianMillis = -1;
+		public long medianIterationMillis = -1;
+
+		Summary(int threads)
+		{
+			this.threads = threads;
+		}
+	}
+}
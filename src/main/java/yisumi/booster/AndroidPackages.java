@@ -5,10 +5,14 @@ import java.io.FileReader;
 import java.util.HashSet;
 import java.util.Set;
 
+import edu.psu.cse.siis.coal.PackageMatcher;
+
 public class AndroidPackages 
 {
 	public static String androidPackagesConfig = "res/android-packages.txt";
 	public static Set<String> androidPackages = new HashSet<String>();
+	//Prefix trie of androidPackages, so that belongTo does not depend on the number of packages
+	private static final PackageMatcher matcher;
 	
 	static
 	{
@@ -25,22 +29,18 @@ public class AndroidPackages
 		{
 			ex.printStackTrace();
 		}
-	}
-	
-	public static boolean belongTo(String clsName)
-	{
-		boolean belongTo = false;
 		
+		PackageMatcher.Builder builder = new PackageMatcher.Builder();
 		for (String pkg : androidPackages)
 		{
-			if (clsName.startsWith(pkg))
-			{
-				belongTo = true;
-				break;
-			}
+			builder.addPrefix(pkg);
 		}
-		
-		return belongTo;
+		matcher = builder.build();
+	}
+	
+	public static boolean belongTo(String clsName)
+	{
+		return matcher.matches(clsName);
 	}
 	
 }
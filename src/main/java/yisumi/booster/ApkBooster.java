@@ -5,8 +5,9 @@ import java.io.IOException;
 import java.util.*;
 
 import yisumi.ClassDescription;
+import yisumi.DroidRAContext;
+import yisumi.DroidRAUtils;
 import yisumi.GlobalRef;
-import yisumi.model.ReflectionProfile;
 import yisumi.model.ReflectionProfile.RClass;
 import yisumi.model.SimpleStmtValue;
 import yisumi.model.StmtKey;
@@ -20,12 +21,30 @@ import soot.G;
 import soot.PackManager;
 import soot.Scene;
 import soot.SceneTransformer;
+import soot.SootClass;
+import soot.SootMethod;
 import soot.Transform;
+import soot.jimple.infoflow.entryPointCreators.SimulatedCodeElementTag;
 import soot.options.Options;
 
 public class ApkBooster extends SceneTransformer
 {
-	public static void apkBooster(String input, String clsPath, String outputDir) 
+	private final DroidRAContext context;
+	
+	public ApkBooster(DroidRAContext context)
+	{
+		this.context = context;
+	}
+	
+	/**
+	 * Instruments the APK of the given context with its reflection analysis results.
+	 * 
+	 * @param context
+	 * @param input
+	 * @param clsPath
+	 * @param outputDir
+	 */
+	public static void apkBooster(DroidRAContext context, String input, String clsPath, String outputDir) 
 	{
 		try
 		{
@@ -36,46 +55,73 @@ public class ApkBooster extends SceneTransformer
 			e.printStackTrace();
 		}
 		
+		if (GlobalRef.singleScene && context.sceneLoaded)
+		{
+			boostLoadedScene(context);
+			return;
+		}
+		
 		String[] args2 =
         {
             "-ire",
 			"-pp",
 			"-p", "cg", "enabled:true"
         };
-		initSoot();
+		DroidRAUtils.initSoot(context.workspace + "_boosted_apps", Options.output_format_dex);
 		
-		PackManager.v().getPack("wjtp").add(new Transform("wjtp.ApkBooster", new ApkBooster()));
+		PackManager.v().getPack("wjtp").add(new Transform("wjtp.ApkBooster", new ApkBooster(context)));
 		soot.Main.main(args2);
 		
 		G.reset();
 	}
-
-	private static void initSoot() {
-		G.reset();
-		Options.v().set_src_prec(Options.src_prec_apk);
-		Options.v().set_full_resolver(true);
-		Options.v().set_drop_bodies_after_load(false);
-		Options.v().set_no_bodies_for_excluded(true);
-		Options.v().set_allow_phantom_refs(true);
-		Options.v().ignore_resolution_errors();
-		Options.v().set_no_writeout_body_releasing(true);
-		Options.v().set_output_dir(GlobalRef.WORKSPACE + "_boosted_apps");
+	
+	/**
+	 * Instruments the Scene already loaded (and analyzed) by the previous phases, 
+	 * and writes it out as dex, instead of reloading the APK.
+	 */
+	private static void boostLoadedScene(DroidRAContext context)
+	{
+		Options.v().set_output_dir(context.workspace + "_boosted_apps");
 		Options.v().set_output_format(Options.output_format_dex);
-		Options.v().set_whole_program(true);
-		Options.v().set_process_multiple_dex(true);
-		Options.v().set_android_jars(GlobalRef.android_jar);
-		Options.v().set_process_dir(Collections.singletonList(GlobalRef.apkPath));
-		Options.v().set_prepend_classpath(true);
-		Options.v().set_keep_line_number(true);
-		Options.v().set_app(true);
-		Options.v().set_include_all(true);
+		
+		new ApkBooster(context).transform("wjtp.ApkBooster");
+		
+		removeSimulatedClasses();
+		PackManager.v().writeOutput();
+		
+		G.reset();
+		context.sceneLoaded = false;
+	}
+	
+	/**
+	 * The call graph construction of FlowDroid adds a dummy main class into the Scene, 
+	 * which does not belong to the app and should not be written out.
+	 */
+	private static void removeSimulatedClasses()
+	{
+		Set<SootClass> simulatedClasses = new HashSet<SootClass>();
+		for (SootMethod ep : Scene.v().getEntryPoints())
+		{
+			if (ep.hasTag(SimulatedCodeElementTag.TAG_NAME))
+			{
+				simulatedClasses.add(ep.getDeclaringClass());
+			}
+		}
+		
+		for (SootClass sc : simulatedClasses)
+		{
+			if (sc.isInScene())
+			{
+				Scene.v().removeClass(sc);
+			}
+		}
 	}
 	
 	private void sanitize()
 	{
 		Map<String, RClass> tmpRClasses = new HashMap<String, RClass>();
 		
-		for (Map.Entry<String, RClass> entry : ReflectionProfile.rClasses.entrySet())
+		for (Map.Entry<String, RClass> entry : context.rClasses.entrySet())
 		{
 			String clsName = entry.getKey();
 			RClass rClass = entry.getValue();
@@ -86,11 +132,11 @@ public class ApkBooster extends SceneTransformer
 			}
 		}
 		
-		ReflectionProfile.rClasses = tmpRClasses;
+		context.rClasses = tmpRClasses;
 		
 		Map<UniqStmt, StmtValue> tmpUniqStmtKeyValues = new HashMap<UniqStmt, StmtValue>();
 		
-		for (Map.Entry<UniqStmt, StmtValue> entry : GlobalRef.uniqStmtKeyValues.entrySet())
+		for (Map.Entry<UniqStmt, StmtValue> entry : context.uniqStmtKeyValues.entrySet())
 		{
 			UniqStmt uniqStmt = entry.getKey();
 			StmtValue stmtValue = entry.getValue();
@@ -120,9 +166,9 @@ public class ApkBooster extends SceneTransformer
 				tmpUniqStmtKeyValues.put(uniqStmt, stmtValue);
 		}
 		
-		GlobalRef.uniqStmtKeyValues = tmpUniqStmtKeyValues;
+		context.uniqStmtKeyValues = tmpUniqStmtKeyValues;
 		
-		for (Map.Entry<UniqStmt, StmtValue> entry : GlobalRef.uniqStmtKeyValues.entrySet())
+		for (Map.Entry<UniqStmt, StmtValue> entry : context.uniqStmtKeyValues.entrySet())
 		{
 			UniqStmt uniqStmt = entry.getKey();
 			StmtValue stmtValue = entry.getValue();
@@ -143,9 +189,9 @@ public class ApkBooster extends SceneTransformer
 		
 		Alteration.v().init();
 		
-		InstrumentationUtils.mockSootClasses(ReflectionProfile.rClasses);
+		InstrumentationUtils.mockSootClasses(context.rClasses);
 		
-		Set<InstrumentPoint> instrumentPoints = toUniqStmtSimpleStmtValues(GlobalRef.uniqStmtKeyValues);
+		Set<InstrumentPoint> instrumentPoints = toUniqStmtSimpleStmtValues(context.uniqStmtKeyValues);
 		
 		Set<InstrumentPoint> ips = noAndroidSystemInstrumentation(instrumentPoints);
 		
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import yisumi.GlobalRef;
+import yisumi.DroidRAContext;
 import yisumi.model.SimpleStmtValue;
 import yisumi.model.StmtKey;
 import yisumi.model.UniqStmt;
@@ -85,7 +85,7 @@ public abstract class DefaultInstrumentation implements IInstrumentation
 		else if (1 < targetMethodList.size())
 		{
 			//Get all its possible arrays
-			ArrayVarValue[] arrayVarValues = GlobalRef.arrayTypeRef.get(uniqStmt);
+			ArrayVarValue[] arrayVarValues = DroidRAContext.current().arrayTypeRef.get(uniqStmt);
 			
 			if (null == arrayVarValues)
 			{
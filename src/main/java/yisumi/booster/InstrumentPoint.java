@@ -1,12 +1,6 @@
 package yisumi.booster;
 
-import java.util.Iterator;
-
-import soot.Body;
-import soot.Scene;
-import soot.SootMethod;
-import soot.Unit;
-import soot.jimple.Stmt;
+import yisumi.DroidRAResult;
 import yisumi.model.SimpleStmtValue;
 import yisumi.model.StmtKey;
 import yisumi.model.UniqStmt;
@@ -19,24 +13,7 @@ public class InstrumentPoint
 	
 	public void updateStmtKey()
 	{
-		stmtKey = new StmtKey();
-		
-		SootMethod sm = Scene.v().getMethod(uniqStmt.methodSignature);
-		stmtKey.setMethod(sm);
-		
-		Body body = sm.retrieveActiveBody();
-		int count = 0;
-		for (Iterator<Unit> iter = body.getUnits().snapshotIterator(); iter.hasNext(); )
-		{
-			Stmt stmt = (Stmt) iter.next();
-			count++;
-			
-			if (count == uniqStmt.stmtSeq)
-			{
-				stmtKey.setStmt(stmt);
-				break;
-			}
-		}
+		stmtKey = DroidRAResult.toStmtKey(uniqStmt);
 	}
 	
 	public void updateUniqStmt()
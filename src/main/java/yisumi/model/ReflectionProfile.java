@@ -8,18 +8,23 @@ import java.util.Map;
 import java.util.Set;
 
 import yisumi.ClassDescription;
+import yisumi.DroidRAContext;
 import yisumi.booster.InstrumentationUtils;
 import soot.Scene;
 import soot.SootClass;
 import soot.jimple.Stmt;
 
+/**
+ * The classes and members accessed through reflection, kept in the current DroidRAContext (rClasses and simpleStrs).
+ */
 public class ReflectionProfile 
 {
-	public static Map<String, RClass> rClasses = new HashMap<String, RClass>();
-	public static Map<String, String> simpleStrs = new HashMap<String, String>();
-	
 	public static void fillReflectionProfile(Map<StmtKey, StmtValue> stmtKeyValues)
 	{
+		DroidRAContext context = DroidRAContext.current();
+		Map<String, RClass> rClasses = context.rClasses;
+		Map<String, String> simpleStrs = context.simpleStrs;
+		
 		for (Map.Entry<StmtKey, StmtValue> entry : stmtKeyValues.entrySet())
 		{
 			StmtKey key = entry.getKey();
@@ -31,7 +36,7 @@ public class ReflectionProfile
 				{
 				case CLASS_NEW_INSTANCE:
 					String clsName = clsDesc.name;
-					RClass rClass = getRClass(ReflectionProfile.rClasses, clsName);
+					RClass rClass = getRClass(rClasses, clsName);
 					
 					if (exist(clsDesc.name, null, 1))
 					{
@@ -46,11 +51,11 @@ public class ReflectionProfile
 					
 					rClass.constructors.add(rConstructor);
 					
-					ReflectionProfile.rClasses.put(clsName, rClass);
+					rClasses.put(clsName, rClass);
 					break;
 				case CONSTRUCTOR_CALL:
 					clsName = clsDesc.cls;
-					rClass = getRClass(ReflectionProfile.rClasses, clsName);
+					rClass = getRClass(rClasses, clsName);
 					
 					if (exist(clsDesc.cls, null, 1))
 					{
@@ -64,12 +69,12 @@ public class ReflectionProfile
 					}
 					
 					rClass.constructors.add(rConstructor);
-					ReflectionProfile.rClasses.put(clsName, rClass);
+					rClasses.put(clsName, rClass);
 					break;
 				case FIELD_CALL:
 					clsName = clsDesc.cls;
 					String fieldName = clsDesc.name;
-					rClass = getRClass(ReflectionProfile.rClasses, clsName);
+					rClass = getRClass(rClasses, clsName);
 					
 					RField rField = new RField();
 					rField.name = fieldName;
@@ -85,12 +90,12 @@ public class ReflectionProfile
 					}
 					
 					rClass.fields.add(rField);
-					ReflectionProfile.rClasses.put(clsName, rClass);
+					rClasses.put(clsName, rClass);
 					break;
 				case METHOD_CALL:
 					clsName = clsDesc.cls;
 					String methodName = clsDesc.name;
-					rClass = getRClass(ReflectionProfile.rClasses, clsName);
+					rClass = getRClass(rClasses, clsName);
 					
 					RMethod rMethod = new RMethod();
 					rMethod.name = methodName;
@@ -108,7 +113,7 @@ public class ReflectionProfile
 					//TODO: Come out a heuristic approach to infer the parameter types (do such for fieldCall as well).
 					
 					rClass.methods.add(rMethod);
-					ReflectionProfile.rClasses.put(clsName, rClass);
+					rClasses.put(clsName, rClass);
 					break;
 				default:    //SIMPLE_STRING
 					break;
@@ -191,6 +196,10 @@ public class ReflectionProfile
 	
 	public static void dump(String prefix)
 	{
+		DroidRAContext context = DroidRAContext.current();
+		Map<String, RClass> rClasses = context.rClasses;
+		Map<String, String> simpleStrs = context.simpleStrs;
+		
 		for (Map.Entry<String, RClass> entry : rClasses.entrySet())
 		{
 			String clsName = entry.getKey();
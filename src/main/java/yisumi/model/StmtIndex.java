@@ -0,0 +1,90 @@
+package yisumi.model;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import soot.Body;
+import soot.Unit;
+import soot.jimple.Stmt;
+import yisumi.DroidRAContext;
+
+/**
+ * Maps the statements of a body to their sequence number (the first stmt is one, see UniqStmt.stmtSeq) and back.
+ *
+ * The index of a body is built once and kept in the current DroidRAContext,
+ * it is rebuilt when the units of the body have been modified since (e.g., by the instrumentation).
+ *
+ */
+public class StmtIndex
+{
+	private final long modificationCount;
+	private final Unit[] units;
+	private final Map<Unit, Integer> seqs;
+
+	private StmtIndex(Body body)
+	{
+		modificationCount = body.getUnits().getModificationCount();
+		units = body.getUnits().toArray(new Unit[0]);
+		seqs = new IdentityHashMap<Unit, Integer>(units.length * 2);
+		for (int i = 0; i < units.length; i++)
+		{
+			seqs.put(units[i], i + 1);
+		}
+	}
+
+	/**
+	 * Returns the up-to-date index of a body.
+	 *
+	 * @param body
+	 * @return the index of the body
+	 */
+	public static StmtIndex v(Body body)
+	{
+		Map<Body, StmtIndex> stmtIndexes = DroidRAContext.current().stmtIndexes;
+		StmtIndex index = stmtIndexes.get(body);
+		if (null == index || index.modificationCount != body.getUnits().getModificationCount())
+		{
+			index = new StmtIndex(body);
+			stmtIndexes.put(body, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param unit
+	 * @return the sequence number of unit, or 0 if it is not in the body
+	 */
+	public int getSeq(Unit unit)
+	{
+		Integer seq = seqs.get(unit);
+		if (null != seq)
+		{
+			return seq;
+		}
+
+		//The unit may be an equivalent statement of another copy of the body
+		String str = unit.toString();
+		for (int i = 0; i < units.length; i++)
+		{
+			if (units[i].toString().equals(str))
+			{
+				return i + 1;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @param seq
+	 * @return the statement whose sequence number is seq, or null if there is none
+	 */
+	public Stmt getStmt(int seq)
+	{
+		if (seq < 1 || seq > units.length)
+		{
+			return null;
+		}
+		return (Stmt) units[seq - 1];
+	}
+}
@@ -14,6 +14,7 @@ public class StmtKey
 {
 	private SootMethod method;
 	private Stmt stmt;
+	private int hash = 0;
 	//private int stmtSeq; //the first stmt is one
 	
 	public StmtKey() {}
@@ -38,10 +39,18 @@ public class StmtKey
 	}
 
 
+	//A key is the identity of its method and statement, which is cheap to hash and, unlike
+	//toString(), does not merge two identical statements of a method.
 	@Override
 	public int hashCode() 
 	{
-		return toString().hashCode();
+		int result = hash;
+		if (0 == result)
+		{
+			result = 31 * System.identityHashCode(method) + System.identityHashCode(stmt);
+			hash = result;
+		}
+		return result;
 	}
 	
 	
@@ -56,10 +65,7 @@ public class StmtKey
 			return false;
 		
 		StmtKey other = (StmtKey) obj;
-		if (hashCode() != other.hashCode())
-			return false;
-		
-		return true;
+		return method == other.method && stmt == other.stmt;
 	}
 
 
@@ -96,6 +102,7 @@ public class StmtKey
 
 	public void setMethod(SootMethod method) {
 		this.method = method;
+		this.hash = 0;
 		
 		//if (this.stmt != null)
 		//{
@@ -109,6 +116,7 @@ public class StmtKey
 
 	public void setStmt(Stmt stmt) {
 		this.stmt = stmt;
+		this.hash = 0;
 		
 		//if (this.method != null)
 		//{
@@ -7,6 +7,32 @@ public class UniqStmt
 	public String stmt;
 	public int stmtSeq;
 	
+	//A statement is identified by its method and its sequence number in the method body (see StmtIndex)
+	@Override
+	public int hashCode() 
+	{
+		return 31 * (methodSignature == null ? 0 : methodSignature.hashCode()) + stmtSeq;
+	}
+	
+	@Override
+	public boolean equals(Object obj) 
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		
+		UniqStmt other = (UniqStmt) obj;
+		if (stmtSeq != other.stmtSeq)
+			return false;
+		if (methodSignature == null)
+			return other.methodSignature == null;
+		
+		return methodSignature.equals(other.methodSignature);
+	}
+	
 	@Override
 	public String toString() {
 		return "UniqStmt [className=" + className + ", methodSignature="
@@ -3,7 +3,8 @@ package yisumi.typeref;
 import java.util.*;
 
 import soot.*;
-import yisumi.GlobalRef;
+import yisumi.DroidRAContext;
+import yisumi.DroidRAUtils;
 import yisumi.model.UniqStmt;
 import soot.jimple.ArrayRef;
 import soot.jimple.AssignStmt;
@@ -29,13 +30,14 @@ import soot.options.Options;
  */
 public class ArrayVarItemTypeRef 
 {
-	public static Map<UniqStmt, ArrayVarValue[]> arrayTypeRef = new HashMap<UniqStmt, ArrayVarValue[]>();
-	
 	public static void main(String[] args)
 	{
+		DroidRAContext context = new DroidRAContext();
+		context.enter();
+		
 		ArrayVarItemTypeRef.setup("/Users/li.li/Project/workspace_for_coal/ReflectionTest/bin", ".");
 		
-		ArrayVarItemTypeRef.dump(arrayTypeRef);
+		ArrayVarItemTypeRef.dump(context.arrayTypeRef);
 	}
 	
 	public static void dump(Map<UniqStmt, ArrayVarValue[]> arrayTypeRef)
@@ -78,9 +80,27 @@ public class ArrayVarItemTypeRef
 			"-p", "jop.cpf", "enabled:true"
         };
 
-		initSoot();
+		DroidRAUtils.initSoot(DroidRAContext.current().workspace, Options.output_format_none);
 
-        PackManager.v().getPack("jtp").add(new Transform("jtp.ArgumentTypeRef", new BodyTransformer() {
+        PackManager.v().getPack("jtp").add(newTransform());
+		
+        soot.Main.main(args);
+        
+        G.reset();
+	}
+	
+	/**
+	 * The jtp transform that fills the arrayTypeRef of the current DroidRAContext. 
+	 * It can be added to any pack run over the APK bodies, e.g., the one of the shared Scene.
+	 * 
+	 * @return
+	 */
+	public static Transform newTransform()
+	{
+		//Soot may run the transform in its own threads
+		final Map<UniqStmt, ArrayVarValue[]> arrayTypeRef = DroidRAContext.current().arrayTypeRef;
+		
+		return new Transform("jtp.ArgumentTypeRef", new BodyTransformer() {
 
 			@Override
 			protected void internalTransform(Body b, String phaseName, Map<String, String> options) 
@@ -239,31 +259,6 @@ public class ArrayVarItemTypeRef
 
 			}
         	
-        }));
-		
-        soot.Main.main(args);
-        
-        G.reset();
-	}
-
-	private static void initSoot() {
-		G.reset();
-		Options.v().set_src_prec(Options.src_prec_apk);
-		Options.v().set_full_resolver(true);
-		Options.v().set_drop_bodies_after_load(false);
-		Options.v().set_no_bodies_for_excluded(true);
-		Options.v().set_allow_phantom_refs(true);
-		Options.v().ignore_resolution_errors();
-		Options.v().set_no_writeout_body_releasing(true);
-		Options.v().set_output_dir(GlobalRef.WORKSPACE);
-		Options.v().set_output_format(Options.output_format_none);
-		Options.v().set_whole_program(true);
-		Options.v().set_process_multiple_dex(true);
-		Options.v().set_android_jars(GlobalRef.android_jar);
-		Options.v().set_process_dir(Collections.singletonList(GlobalRef.apkPath));
-		Options.v().set_prepend_classpath(true);
-		Options.v().set_keep_line_number(true);
-		Options.v().set_app(true);
-		Options.v().set_include_all(true);
+        });
 	}
 }